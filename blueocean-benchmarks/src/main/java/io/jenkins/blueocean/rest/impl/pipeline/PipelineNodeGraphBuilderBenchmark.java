@@ -0,0 +1,160 @@
+package io.jenkins.blueocean.rest.impl.pipeline;
+
+import io.jenkins.blueocean.rest.hal.Link;
+import io.jenkins.blueocean.rest.model.BluePipelineNode;
+import io.jenkins.blueocean.rest.model.BluePipelineStep;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link PipelineNodeGraphBuilder} and {@link PipelineStepContainerImpl} over synthetic flow graphs.
+ *
+ * Run with the gc profiler to get allocation rate next to ops/sec, see pom.xml of this module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PipelineNodeGraphBuilderBenchmark {
+
+    public enum Shape {
+        /** 500 block stages with 10 steps each, followed by a stage with 4 parallel branches */
+        LINEAR_STAGES {
+            @Override
+            void create(SyntheticFlowExecution execution) {
+                for(int i = 0; i < 500; i++){
+                    execution.startStage("stage-" + i).steps(10).endStage();
+                }
+                execution.startStage("parallel").parallel(4, 10).endStage();
+            }
+        },
+        /** A stage with 1000 parallel branches between two regular stages */
+        WIDE_PARALLEL {
+            @Override
+            void create(SyntheticFlowExecution execution) {
+                execution.startStage("build").steps(10).endStage();
+                execution.startStage("test").parallel(1000, 5).endStage();
+                execution.startStage("deploy").steps(10).endStage();
+            }
+        },
+        /** 100 stages nested in each other, with parallel branches in the innermost one */
+        DEEP_NESTING {
+            @Override
+            void create(SyntheticFlowExecution execution) {
+                for(int i = 0; i < 100; i++){
+                    execution.startStage("stage-" + i).steps(5);
+                }
+                execution.parallel(4, 5);
+                for(int i = 0; i < 100; i++){
+                    execution.endStage();
+                }
+            }
+        },
+        /**
+         * 100 stages with 1000 steps each and 4 parallel branches with 1000 steps each, more than 100k steps. Stages
+         * don't have body, as in scripted pipelines that typically get that big.
+         */
+        MANY_STEPS {
+            @Override
+            void create(SyntheticFlowExecution execution) {
+                for(int i = 0; i < 100; i++){
+                    execution.legacyStage("stage-" + i).steps(1000);
+                }
+                execution.legacyStage("parallel").parallel(4, 1000);
+            }
+        };
+
+        abstract void create(SyntheticFlowExecution execution);
+    }
+
+    @Param
+    public Shape shape;
+
+    private final Link link = new Link("/");
+
+    private SyntheticFlowExecution execution;
+    private PipelineNodeGraphBuilder builder;
+
+    /** Builder over the first half of the nodes, as if the pipeline is still running */
+    private PipelineNodeGraphBuilder partialBuilder;
+
+    private FlowNode stage;
+    private FlowNode branch;
+
+    @Setup
+    public void setup() throws IOException {
+        File rootDir = Files.createTempDirectory("blueocean-benchmark").toFile();
+        rootDir.deleteOnExit();
+        execution = new SyntheticFlowExecution(rootDir);
+        shape.create(execution);
+        execution.end();
+
+        List<FlowNode> nodes = execution.getSortedNodes();
+        builder = new PipelineNodeGraphBuilder(null, execution, nodes);
+        partialBuilder = new PipelineNodeGraphBuilder(null, execution, nodes.subList(0, nodes.size() / 2));
+
+        List<FlowNode> stages = builder.getSages();
+        List<FlowNode> branches = builder.getParallelBranches();
+        stage = stages.get(stages.size() / 2);
+        branch = branches.get(branches.size() / 2);
+    }
+
+    @Benchmark
+    public PipelineNodeGraphBuilder build() {
+        return new PipelineNodeGraphBuilder(null, execution, PipelineNodeGraphBuilder.sortNodes(execution));
+    }
+
+    /**
+     * Build of stages and parallel branches only, compare allocation rate with {@link #build()}
+     */
+    @Benchmark
+    public List<BluePipelineNode> buildStagesOnly() {
+        return PipelineNodeGraphBuilder.stagesOnly(null, execution).getPipelineNodes(link);
+    }
+
+    @Benchmark
+    public List<BluePipelineNode> getPipelineNodes() {
+        return builder.getPipelineNodes(link);
+    }
+
+    @Benchmark
+    public List<BluePipelineNode> union() {
+        return partialBuilder.union(builder, link);
+    }
+
+    @Benchmark
+    public List<FlowNode> getStageSteps() {
+        return builder.getStageSteps(stage);
+    }
+
+    @Benchmark
+    public List<FlowNode> getParallelBranchSteps() {
+        return builder.getParallelBranchSteps(branch);
+    }
+
+    @Benchmark
+    public void stageStepContainer(Blackhole blackhole) {
+        for(BluePipelineStep step: new PipelineStepContainerImpl(stage, builder, link)){
+            blackhole.consume(step);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package io.jenkins.blueocean.rest.impl.pipeline;
+
+import hudson.model.Action;
+import hudson.model.Queue;
+import hudson.model.Result;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.StageAction;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowExecution;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepEndNode;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepStartNode;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
+import org.jenkinsci.plugins.workflow.graph.FlowEndNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graph.FlowStartNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In memory flow execution to build synthetic flow graphs. Nodes are created through the same node classes CPS uses
+ * and carry the same actions stage and parallel steps add, but nothing is persisted and no script is run.
+ *
+ * Nodes are appended to the current head, so the graph is always valid: ids grow, parents come before children and
+ * blocks are closed in the order they were opened.
+ */
+public class SyntheticFlowExecution extends CpsFlowExecution {
+    private final Map<String, FlowNode> nodes = new HashMap<>();
+    private final List<FlowNode> sortedNodes = new ArrayList<>();
+    private final Deque<StepStartNode> openBlocks = new ArrayDeque<>();
+    private final FlowStartNode startNode;
+    private FlowNode head;
+    private boolean complete;
+
+    public SyntheticFlowExecution(File rootDir) throws IOException {
+        super("", new Owner(rootDir));
+        this.startNode = add(new FlowStartNode(this, iotaStr()));
+    }
+
+    /**
+     * Stage without body, as in <code>stage 'name'</code>
+     */
+    public SyntheticFlowExecution legacyStage(String name){
+        StepAtomNode stage = new StepAtomNode(this, null, head);
+        stage.addAction(new LabelAction(name));
+        stage.addAction(new StageActionImpl(name));
+        add(stage);
+        return this;
+    }
+
+    /**
+     * Opens a stage block, steps and stages added until {@link #endStage()} are nested in it
+     */
+    public SyntheticFlowExecution startStage(String name){
+        StepStartNode stage = new StepStartNode(this, null, head);
+        stage.addAction(new LabelAction(name));
+        add(stage);
+        openBlocks.push(stage);
+        openBlocks.push(add(new StepStartNode(this, null, stage)));
+        return this;
+    }
+
+    public SyntheticFlowExecution endStage(){
+        add(new StepEndNode(this, openBlocks.pop(), head));
+        add(new StepEndNode(this, openBlocks.pop(), head));
+        return this;
+    }
+
+    public SyntheticFlowExecution steps(int count){
+        for(int i = 0; i < count; i++){
+            add(new StepAtomNode(this, null, head));
+        }
+        return this;
+    }
+
+    /**
+     * Adds parallel step with the given number of branches, each branch is run to its end before next one starts.
+     */
+    public SyntheticFlowExecution parallel(int branches, int stepsPerBranch){
+        StepStartNode parallel = add(new StepStartNode(this, null, head));
+        List<FlowNode> branchEnds = new ArrayList<>();
+        for(int i = 0; i < branches; i++){
+            StepStartNode branch = new StepStartNode(this, null, parallel);
+            branch.addAction(new BranchLabelAction("branch-" + i));
+            add(branch);
+            steps(stepsPerBranch);
+            branchEnds.add(add(new StepEndNode(this, branch, head)));
+        }
+        add(new StepEndNode(this, parallel, branchEnds));
+        return this;
+    }
+
+    public SyntheticFlowExecution end(){
+        add(new FlowEndNode(this, iotaStr(), startNode, Result.SUCCESS, head));
+        complete = true;
+        return this;
+    }
+
+    /**
+     * @return all nodes in id order
+     */
+    public List<FlowNode> getSortedNodes() {
+        return Collections.unmodifiableList(sortedNodes);
+    }
+
+    private <T extends FlowNode> T add(T node){
+        node.addAction(new TimingAction());
+        nodes.put(node.getId(), node);
+        sortedNodes.add(node);
+        head = node;
+        return node;
+    }
+
+    @Override
+    public FlowNode getNode(String id) {
+        return nodes.get(id);
+    }
+
+    @Override
+    public List<Action> loadActions(FlowNode node) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public void saveActions(FlowNode node, List<Action> actions) {
+    }
+
+    @Override
+    public List<FlowNode> getCurrentHeads() {
+        return Collections.singletonList(head);
+    }
+
+    @Override
+    public boolean isCurrentHead(FlowNode node) {
+        return node.equals(head);
+    }
+
+    @Override
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public Throwable getCauseOfFailure() {
+        return null;
+    }
+
+    private static class StageActionImpl implements StageAction {
+        private final String stageName;
+
+        private StageActionImpl(String stageName) {
+            this.stageName = stageName;
+        }
+
+        @Override
+        public String getStageName() {
+            return stageName;
+        }
+
+        @Override
+        public String getIconFileName() {
+            return null;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return null;
+        }
+
+        @Override
+        public String getUrlName() {
+            return null;
+        }
+    }
+
+    private static class BranchLabelAction extends LabelAction implements ThreadNameAction {
+        private BranchLabelAction(String branchName) {
+            super(branchName);
+        }
+
+        @Override
+        public String getThreadName() {
+            return getDisplayName();
+        }
+    }
+
+    private static class Owner extends FlowExecutionOwner {
+        private final File rootDir;
+
+        private Owner(File rootDir) {
+            this.rootDir = rootDir;
+        }
+
+        @Override
+        public FlowExecution get() throws IOException {
+            throw new IOException("Synthetic execution has no owner");
+        }
+
+        @Override
+        public File getRootDir() {
+            return rootDir;
+        }
+
+        @Override
+        public Queue.Executable getExecutable() {
+            return null;
+        }
+
+        @Override
+        public String getUrl() {
+            return "synthetic/";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o == this;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
@@ -5,6 +5,8 @@ import hudson.Extension;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.model.listeners.RunListener;
+import io.jenkins.blueocean.rest.impl.pipeline.FlowGraphIndex;
+import io.jenkins.blueocean.rest.impl.pipeline.PipelineNodeGraphBuilder;
 import org.jenkins.pubsub.Message;
 import org.jenkins.pubsub.MessageException;
 import org.jenkins.pubsub.PubsubBus;
@@ -21,7 +23,6 @@ import org.jenkinsci.plugins.workflow.graph.FlowEndNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
@@ -48,6 +49,12 @@ public class PipelineEventListener extends RunListener<Run<?,?>> {
         private String currentStageName;
         private String currentStageId;
 
+        /**
+         * Blocks of the flow graph seen so far, so that context of a node is found without walking its ancestors.
+         * Keeps open blocks and stages only, memory doesn't grow with the number of steps.
+         */
+        private final FlowGraphIndex index = FlowGraphIndex.stagesOnly();
+
         public StageEventPublisher(Run r) {
             this.run = r;
             pubSubBus = PubsubBus.getBus();
@@ -56,6 +63,7 @@ public class PipelineEventListener extends RunListener<Run<?,?>> {
 
         @Override
         public void onNewHead(FlowNode flowNode) {
+            index(flowNode);
             if (flowNode instanceof StepStartNode) {
                 if (flowNode.getAction(BodyInvocationAction.class) != null) {
                     List<String> branch = getBranch(flowNode);
@@ -73,56 +81,50 @@ public class PipelineEventListener extends RunListener<Run<?,?>> {
                 publishEvent(newMessage(PipelineEventChannel.Event.pipeline_step, flowNode, branch));
             } else if (flowNode instanceof StepEndNode) {
                 if (flowNode.getAction(BodyInvocationAction.class) != null) {
-                    try {
-                        String startNodeId = ((StepEndNode) flowNode).getStartNode().getId();
-                        FlowNode startNode =  flowNode.getExecution().getNode(startNodeId);
-                        List<String> branch = getBranch(startNode);
+                    String startNodeId = ((StepEndNode) flowNode).getStartNode().getId();
+                    // end node sits in the same block as its start node
+                    List<String> branch = getBranch(flowNode);
 
-                        branch.add(startNodeId);
-                        publishEvent(newMessage(PipelineEventChannel.Event.pipeline_block_end, flowNode, branch));
-                    } catch (IOException e) {
-                        LOGGER.log(Level.SEVERE, "Unexpected error publishing pipeline FlowNode event.", e);
-                    }
+                    branch.add(startNodeId);
+                    publishEvent(newMessage(PipelineEventChannel.Event.pipeline_block_end, flowNode, branch));
                 }
             } else if (flowNode instanceof FlowEndNode) {
                 publishEvent(newMessage(PipelineEventChannel.Event.pipeline_end));
             }
         }
 
-        private List<String> getBranch(FlowNode flowNode) {
-            List<String> branch = new ArrayList<>();
-            FlowNode parentBlock = getParentBlock(flowNode);
-
-            while (parentBlock != null) {
-                branch.add(0, parentBlock.getId());
-                parentBlock = getParentBlock(parentBlock);
-            }
-
-            return branch;
-        }
-
-        private FlowNode getParentBlock(FlowNode flowNode) {
-            List<FlowNode> parents = flowNode.getParents();
-
-            for (FlowNode parent : parents) {
-                if (parent instanceof StepStartNode) {
-                    if (parent.getAction(BodyInvocationAction.class) != null) {
-                        return parent;
+        /**
+         * Adds the given node to the index. Listener may be added to an execution that already has nodes, e.g. a
+         * resumed one, those are indexed first.
+         */
+        private void index(FlowNode flowNode) {
+            synchronized (index) {
+                if (index.size() == 0 && !flowNode.getParents().isEmpty()) {
+                    for (FlowNode n : PipelineNodeGraphBuilder.streamNodes(flowNode.getExecution())) {
+                        index.add(n);
                     }
                 }
+                if (!index.contains(flowNode)) {
+                    index.add(flowNode);
+                }
             }
+        }
 
-            for (FlowNode parent : parents) {
-                if (parent instanceof StepEndNode) {
-                    continue;
-                }
-                FlowNode grandparent = getParentBlock(parent);
-                if (grandparent != null) {
-                    return grandparent;
+        /**
+         * @return ids of body start nodes of the blocks enclosing the given node, outermost first
+         */
+        private List<String> getBranch(FlowNode flowNode) {
+            List<String> branch = new ArrayList<>();
+            synchronized (index) {
+                FlowNode parentBlock = index.getEnclosingBlock(flowNode);
+                while (parentBlock != null) {
+                    if (parentBlock instanceof StepStartNode && parentBlock.getAction(BodyInvocationAction.class) != null) {
+                        branch.add(0, parentBlock.getId());
+                    }
+                    parentBlock = index.getEnclosingBlock(parentBlock);
                 }
             }
-
-            return null;
+            return branch;
         }
 
         private String toPath(List<String> branch) {
@@ -0,0 +1,615 @@
+package io.jenkins.blueocean.rest.impl.pipeline;
+
+import hudson.model.Action;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.StageAction;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+
+import javax.annotation.CheckForNull;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index over flow nodes of a pipeline run, computed in a single pass over the nodes sorted by id.
+ *
+ * Since a flow node is always created after its parents and a block end node after its block start node, each node
+ * can be resolved to its closest enclosing block and parallel branch by looking at what has been indexed already,
+ * without scanning the node list or walking the parent chain. For the same reason the index can be fed node by node
+ * while the pipeline is running.
+ *
+ * Nodes are kept in arrays indexed by their position in id order, relations between nodes are positions as well.
+ * Numeric node id is parsed once, when the node is added, and maps straight to the position.
+ *
+ * Each node is also classified when it's added, with a single scan of its actions, so graph code doesn't go through
+ * {@link FlowNode#getAction(Class)} over and over for the same node.
+ *
+ * An index created by {@link #stagesOnly()} doesn't keep all the nodes. It keeps stages, parallel branches, their end
+ * nodes and the blocks enclosing them, and otherwise only the nodes that nodes still to come can refer to: open blocks
+ * and current heads. Memory it takes is proportional to the number of stages and branches rather than to the size of
+ * the flow graph, but positions are not in id order and nodes it dropped can't be looked up.
+ */
+public class FlowGraphIndex {
+    private static final int NONE = -1;
+
+    /**
+     * Kind of a flow node, as far as pipeline graph is concerned
+     */
+    public enum NodeKind {
+        /** Stage step without body, or start node of a stage block */
+        STAGE,
+        /** Body start node of a parallel branch */
+        PARALLEL_BRANCH,
+        /** Step without body */
+        STEP,
+        BLOCK_START,
+        BLOCK_END,
+        OTHER
+    }
+
+    private static final byte STAGE = 1;
+    private static final byte PARALLEL_BRANCH = 1 << 1;
+    private static final byte ATOM = 1 << 2;
+    private static final byte BLOCK_START = 1 << 3;
+    private static final byte BLOCK_END = 1 << 4;
+    /** Stage with a body, its status is the status of its block */
+    private static final byte BLOCK_STAGE = 1 << 5;
+    /** Node that is never dropped by an index that doesn't retain all nodes */
+    private static final byte RETAINED = 1 << 6;
+
+    private final boolean retainAll;
+
+    private int size;
+    private FlowNode[] nodes = new FlowNode[64];
+    private int[] idToPosition = newPositions(64);
+
+    /** Positions of nodes by id, when not all nodes are retained */
+    private final Map<Integer, Integer> retainedPositions;
+    /** Positions freed by dropped nodes, when not all nodes are retained */
+    private int[] freePositions = new int[0];
+    private int freeCount;
+    private int usedPositions;
+    private int highestId = NONE;
+    private FlowNode lastNode;
+
+    private int[] parents = newPositions(64);
+    private int[] enclosingBlocks = newPositions(64);
+    private int[] enclosingBranches = newPositions(64);
+
+    /** For block start nodes position of the end node, for block end nodes position of the start node */
+    private int[] blockBoundaries = newPositions(64);
+
+    private byte[] flags = new byte[64];
+
+    /** Display names of stages and parallel branches, other nodes get theirs computed on first use */
+    private String[] displayNames = new String[64];
+
+    /** Start times of nodes, 0 until known. Start time of a node never changes once it's set */
+    private long[] startTimes = new long[64];
+
+    public FlowGraphIndex() {
+        this(true);
+    }
+
+    private FlowGraphIndex(boolean retainAll) {
+        this.retainAll = retainAll;
+        this.retainedPositions = retainAll ? null : new HashMap<Integer, Integer>();
+    }
+
+    /**
+     * @return index that keeps only the nodes pipeline graph is made of, see {@link FlowGraphIndex}
+     */
+    public static FlowGraphIndex stagesOnly(){
+        return new FlowGraphIndex(false);
+    }
+
+    /**
+     * @param sortedNodes flow nodes sorted by id, parents always come before their children
+     */
+    public FlowGraphIndex(List<FlowNode> sortedNodes) {
+        this(true);
+        for(FlowNode node: sortedNodes){
+            add(node);
+        }
+    }
+
+    /**
+     * Adds next node, it must have a bigger id than any node indexed so far
+     */
+    public void add(FlowNode node){
+        int position = allocate();
+        size++;
+        nodes[position] = node;
+        lastNode = node;
+
+        int id = parseId(node.getId());
+        if(id != NONE){
+            if(retainAll){
+                if(id >= idToPosition.length){
+                    idToPosition = grow(idToPosition, id + 1);
+                }
+                idToPosition[id] = position;
+            }else{
+                retainedPositions.put(id, position);
+            }
+            highestId = Math.max(highestId, id);
+        }
+
+        classify(node, position);
+
+        List<FlowNode> nodeParents = node.getParents();
+        parents[position] = nodeParents.isEmpty() ? NONE : getPosition(nodeParents.get(0));
+
+        if(node instanceof BlockEndNode){
+            int start = getPosition(((BlockEndNode<?>) node).getStartNode());
+            blockBoundaries[position] = start;
+            if(start != NONE){
+                blockBoundaries[start] = position;
+                if(is(start, RETAINED)){
+                    flags[position] |= RETAINED;
+                }
+            }
+        }
+
+        int block = computeEnclosingBlock(node, position);
+        enclosingBlocks[position] = block;
+        if(block != NONE){
+            enclosingBranches[position] = is(block, PARALLEL_BRANCH) ? block : enclosingBranches[block];
+        }
+
+        if(!retainAll){
+            if(is(position, (byte) (STAGE | PARALLEL_BRANCH))){
+                retain(position);
+            }
+            // parents are heads no more, only the relations to retained nodes are kept
+            parents[position] = NONE;
+            for(FlowNode parent: nodeParents){
+                drop(getPosition(parent));
+            }
+        }
+    }
+
+    /**
+     * Retains node at the given position along with the blocks enclosing it, so that relations of retained nodes
+     * always point to retained nodes.
+     */
+    private void retain(int position){
+        for(int p = position; p != NONE && !is(p, RETAINED); p = enclosingBlocks[p]){
+            flags[p] |= RETAINED;
+        }
+    }
+
+    /**
+     * Drops node that is no longer a head, unless it's retained or it's a block start whose block is still referred
+     * to. Start of a block is dropped with its end node.
+     */
+    private void drop(int position){
+        if(position == NONE || is(position, RETAINED) || nodes[position] instanceof BlockStartNode){
+            return;
+        }
+        if(nodes[position] instanceof BlockEndNode){
+            int start = blockBoundaries[position];
+            if(start != NONE && !is(start, RETAINED)){
+                free(start);
+            }
+        }
+        free(position);
+    }
+
+    private void free(int position){
+        int id = parseId(nodes[position].getId());
+        if(id != NONE){
+            retainedPositions.remove(id);
+        }
+        nodes[position] = null;
+        displayNames[position] = null;
+        startTimes[position] = 0;
+        flags[position] = 0;
+        parents[position] = NONE;
+        enclosingBlocks[position] = NONE;
+        enclosingBranches[position] = NONE;
+        blockBoundaries[position] = NONE;
+        if(freeCount == freePositions.length){
+            freePositions = Arrays.copyOf(freePositions, Math.max(16, freeCount * 2));
+        }
+        freePositions[freeCount++] = position;
+    }
+
+    private int allocate(){
+        if(freeCount > 0){
+            return freePositions[--freeCount];
+        }
+        ensureCapacity(usedPositions + 1);
+        return usedPositions++;
+    }
+
+    /**
+     * Same rules as {@link PipelineNodeUtil#isStage(FlowNode)}, {@link PipelineNodeUtil#isParallelBranch(FlowNode)}
+     * and {@link PipelineNodeUtil#getDisplayName(FlowNode)}, with one pass over actions of the node.
+     */
+    private void classify(FlowNode node, int position){
+        StageAction stageAction = null;
+        LabelAction labelAction = null;
+        ThreadNameAction threadNameAction = null;
+        long startTime = 0;
+        for(Action action: node.getActions()){
+            if(startTime == 0 && action instanceof TimingAction){
+                startTime = ((TimingAction) action).getStartTime();
+            }
+            if(stageAction == null && action instanceof StageAction){
+                stageAction = (StageAction) action;
+            }
+            if(labelAction == null && action instanceof LabelAction){
+                labelAction = (LabelAction) action;
+            }
+            if(threadNameAction == null && action instanceof ThreadNameAction){
+                threadNameAction = (ThreadNameAction) action;
+            }
+        }
+
+        byte f = 0;
+        if(stageAction != null || (labelAction != null && threadNameAction == null)){
+            f |= STAGE;
+            if(stageAction == null){
+                f |= BLOCK_STAGE;
+            }
+        }else if(labelAction != null){
+            f |= PARALLEL_BRANCH;
+        }
+        if(node instanceof StepAtomNode){
+            f |= ATOM;
+        }else if(node instanceof BlockStartNode){
+            f |= BLOCK_START;
+        }else if(node instanceof BlockEndNode){
+            f |= BLOCK_END;
+        }
+        flags[position] = f;
+        startTimes[position] = startTime;
+
+        if(threadNameAction != null){
+            displayNames[position] = threadNameAction.getThreadName();
+        }else if(labelAction != null){
+            displayNames[position] = labelAction.getDisplayName();
+        }
+    }
+
+    /**
+     * Block end node sits at the same level as its start node, any other node is enclosed by the block its
+     * first parent is enclosed by, or by its first parent itself if it opens a block.
+     */
+    private int computeEnclosingBlock(FlowNode node, int position){
+        if(node instanceof BlockEndNode){
+            int start = blockBoundaries[position];
+            return start == NONE ? NONE : enclosingBlocks[start];
+        }
+        int parent = parents[position];
+        if(parent == NONE){
+            return NONE;
+        }
+        if(nodes[parent] instanceof BlockStartNode){
+            return parent;
+        }
+        if(nodes[parent] instanceof BlockEndNode){
+            int start = blockBoundaries[parent];
+            return start == NONE ? NONE : enclosingBlocks[start];
+        }
+        return enclosingBlocks[parent];
+    }
+
+    /**
+     * @return number of indexed nodes
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @return false if this index keeps only the nodes pipeline graph is made of
+     * @see #stagesOnly()
+     */
+    public boolean retainsAllNodes(){
+        return retainAll;
+    }
+
+    /**
+     * @return true if the given node has been added to this index, whether it was retained or not
+     */
+    public boolean contains(FlowNode node){
+        if(getPosition(node) != NONE){
+            return true;
+        }
+        int id = parseId(node.getId());
+        return !retainAll && id != NONE && id <= highestId;
+    }
+
+    /**
+     * @return highest numeric id of nodes added so far, -1 if there is none
+     */
+    public int getHighestId(){
+        return highestId;
+    }
+
+    /**
+     * @return node added last, null if the index is empty
+     */
+    public @CheckForNull FlowNode getLastNode(){
+        return lastNode;
+    }
+
+    /**
+     * Walks up from the node added last, skipping completed blocks, the same way
+     * {@link PipelineNodeUtil#getCurrentStage(org.jenkinsci.plugins.workflow.flow.FlowExecution)} walks up from the
+     * current heads, but over positions of this index rather than flow node parents.
+     *
+     * @return stage or parallel branch the node added last is in, null if there is none or if this index doesn't
+     * retain all nodes
+     */
+    public @CheckForNull FlowNode getCurrentStage(){
+        if(!retainAll || lastNode == null){
+            return null;
+        }
+        int position = getPosition(lastNode);
+        while(position != NONE){
+            if(is(position, BLOCK_END)){
+                position = blockBoundaries[position];
+                if(position == NONE){
+                    return null;
+                }
+            }else if(is(position, STAGE) || is(position, PARALLEL_BRANCH)){
+                return nodes[position];
+            }
+            position = parents[position];
+        }
+        return null;
+    }
+
+    /**
+     * @return node at the given position, in id order if all nodes are retained
+     */
+    public FlowNode getNode(int position){
+        return nodes[position];
+    }
+
+    /**
+     * @return node with the given id, null if there is no such node
+     */
+    public @CheckForNull FlowNode getNode(String id){
+        int position = getPosition(id);
+        return position == NONE ? null : nodes[position];
+    }
+
+    /**
+     * @return position of the given node in id order, -1 if the node is not indexed
+     */
+    public int getPosition(FlowNode node){
+        int position = getPosition(node.getId());
+        return position != NONE && nodes[position].equals(node) ? position : NONE;
+    }
+
+    private int getPosition(String id){
+        int i = parseId(id);
+        if(i == NONE){
+            return NONE;
+        }
+        if(!retainAll){
+            Integer position = retainedPositions.get(i);
+            return position == null ? NONE : position;
+        }
+        return i >= idToPosition.length ? NONE : idToPosition[i];
+    }
+
+    public NodeKind getKind(int position){
+        if(is(position, STAGE)){
+            return NodeKind.STAGE;
+        }else if(is(position, PARALLEL_BRANCH)){
+            return NodeKind.PARALLEL_BRANCH;
+        }else if(is(position, ATOM)){
+            return NodeKind.STEP;
+        }else if(is(position, BLOCK_START)){
+            return NodeKind.BLOCK_START;
+        }else if(is(position, BLOCK_END)){
+            return NodeKind.BLOCK_END;
+        }
+        return NodeKind.OTHER;
+    }
+
+    public boolean isStage(int position){
+        return is(position, STAGE);
+    }
+
+    public boolean isParallelBranch(int position){
+        return is(position, PARALLEL_BRANCH);
+    }
+
+    /**
+     * Same as {@link TimingAction#getStartTime(FlowNode)}, read when the node was added, or when first asked for if
+     * the node had no timing then.
+     */
+    public long getStartTime(int position){
+        if(startTimes[position] == 0){
+            startTimes[position] = TimingAction.getStartTime(nodes[position]);
+        }
+        return startTimes[position];
+    }
+
+    /**
+     * @see #getStartTime(int)
+     */
+    public long getStartTime(FlowNode node){
+        int position = getPosition(node);
+        return position == NONE ? TimingAction.getStartTime(node) : getStartTime(position);
+    }
+
+    /**
+     * @return true if node at the given position is a {@link StepAtomNode}, legacy stages included
+     */
+    public boolean isAtom(int position){
+        return is(position, ATOM);
+    }
+
+    /**
+     * Node classification for nodes that might not be indexed, such as future nodes projected from another run
+     */
+    public boolean isStage(FlowNode node){
+        int position = getPosition(node);
+        return position == NONE ? PipelineNodeUtil.isStage(node) : isStage(position);
+    }
+
+    public boolean isParallelBranch(FlowNode node){
+        int position = getPosition(node);
+        return position == NONE ? PipelineNodeUtil.isParallelBranch(node) : isParallelBranch(position);
+    }
+
+    /**
+     * @return true if the given node is start node of a stage with body
+     */
+    public boolean isBlockStage(FlowNode node){
+        int position = getPosition(node);
+        return position != NONE && is(position, BLOCK_STAGE);
+    }
+
+    /**
+     * @see PipelineNodeUtil#getDisplayName(FlowNode)
+     */
+    public String getDisplayName(FlowNode node){
+        int position = getPosition(node);
+        if(position == NONE){
+            return PipelineNodeUtil.getDisplayName(node);
+        }
+        if(displayNames[position] == null){
+            displayNames[position] = PipelineNodeUtil.getDisplayName(node);
+        }
+        return displayNames[position];
+    }
+
+    private boolean is(int position, byte flag){
+        return (flags[position] & flag) != 0;
+    }
+
+    /**
+     * @return position of the first parent of the node at the given position, -1 if it has no parent or if this index
+     * doesn't retain all nodes
+     */
+    public int getParent(int position){
+        return parents[position];
+    }
+
+    /**
+     * @return end node of the given block start node, null if the block is still running
+     */
+    public @CheckForNull FlowNode getEndNode(FlowNode startNode){
+        int position = getPosition(startNode);
+        if(position == NONE || !(startNode instanceof BlockStartNode)){
+            return null;
+        }
+        int end = blockBoundaries[position];
+        return end == NONE ? null : nodes[end];
+    }
+
+    /**
+     * @return closest block start node enclosing the given node, null for top level nodes
+     */
+    public @CheckForNull FlowNode getEnclosingBlock(FlowNode node){
+        return nodeAt(enclosingBlocks, getPosition(node));
+    }
+
+    /**
+     * @return closest parallel branch enclosing the given node, null if the node is not inside a parallel branch
+     */
+    public @CheckForNull FlowNode getEnclosingBranch(FlowNode node){
+        return nodeAt(enclosingBranches, getPosition(node));
+    }
+
+    public boolean isNestedInParallel(FlowNode node){
+        return getEnclosingBranch(node) != null;
+    }
+
+    /**
+     * @return true if the given node is inside the block opened by the given block start node, at any depth. Block
+     * end node is not inside its own block.
+     */
+    public boolean isInBlock(FlowNode startNode, FlowNode node){
+        int start = getPosition(startNode);
+        int position = getPosition(node);
+        return start != NONE && position != NONE && isInBlock(start, position);
+    }
+
+    /**
+     * Node is inside a block if the block start node is one of its enclosing blocks, found by walking up the enclosing
+     * blocks of the node. It takes as many steps as blocks are nested, whatever the size of the graph, and nothing
+     * is computed ahead so nodes can keep being added.
+     *
+     * @see #isInBlock(FlowNode, FlowNode)
+     */
+    public boolean isInBlock(int start, int position){
+        if(start == position || !(nodes[start] instanceof BlockStartNode)){
+            return false;
+        }
+        for(int block = enclosingBlocks[position]; block != NONE; block = enclosingBlocks[block]){
+            if(block == start){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private FlowNode nodeAt(int[] relation, int position){
+        if(position == NONE || relation[position] == NONE){
+            return null;
+        }
+        return nodes[relation[position]];
+    }
+
+    private void ensureCapacity(int capacity){
+        if(capacity > nodes.length){
+            int length = Math.max(capacity, nodes.length * 2);
+            nodes = Arrays.copyOf(nodes, length);
+            parents = grow(parents, length);
+            enclosingBlocks = grow(enclosingBlocks, length);
+            enclosingBranches = grow(enclosingBranches, length);
+            blockBoundaries = grow(blockBoundaries, length);
+            flags = Arrays.copyOf(flags, length);
+            displayNames = Arrays.copyOf(displayNames, length);
+            startTimes = Arrays.copyOf(startTimes, length);
+        }
+    }
+
+    private static int[] grow(int[] positions, int capacity){
+        int length = Math.max(capacity, positions.length * 2);
+        int[] grown = Arrays.copyOf(positions, length);
+        Arrays.fill(grown, positions.length, length, NONE);
+        return grown;
+    }
+
+    private static int[] newPositions(int length){
+        int[] positions = new int[length];
+        Arrays.fill(positions, NONE);
+        return positions;
+    }
+
+    /**
+     * Flow node ids are sequence numbers, ids of CPS nodes are always numeric.
+     *
+     * @return numeric value of the given node id, -1 if it's not a number
+     */
+    static int parseId(String id){
+        if(id.isEmpty() || id.length() > 9){
+            return NONE;
+        }
+        int value = 0;
+        for(int i = 0; i < id.length(); i++){
+            char c = id.charAt(i);
+            if(c < '0' || c > '9'){
+                return NONE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
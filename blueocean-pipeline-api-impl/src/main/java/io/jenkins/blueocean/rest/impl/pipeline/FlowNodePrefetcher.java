@@ -0,0 +1,136 @@
+package io.jenkins.blueocean.rest.impl.pipeline;
+
+import com.google.common.collect.AbstractIterator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flow nodes of an execution with ids in a known range, loaded from the execution storage ahead of the reader by a
+ * bounded I/O pool and given in id order. Each node is stored in its own file, so a cold graph build of a big run
+ * is otherwise one small synchronous read after another.
+ *
+ * At most {@link #WINDOW} nodes are loaded ahead of the reader, nodes not read yet when the reader stops are left to
+ * be loaded into the storage cache. With no prefetch threads nodes are loaded by the reader one by one.
+ *
+ * @see PipelineNodeGraphBuilder#streamNodes(FlowExecution)
+ */
+class FlowNodePrefetcher implements Iterable<FlowNode> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlowNodePrefetcher.class);
+
+    /** Number of threads loading flow nodes for all graph builds, 0 to load them in the reading thread */
+    static final int THREADS = Integer.getInteger(FlowNodePrefetcher.class.getName() + ".threads", 4);
+
+    /** Number of nodes loaded ahead of the reader of a single graph build */
+    static final int WINDOW = Integer.getInteger(FlowNodePrefetcher.class.getName() + ".window", 64);
+
+    private static final ExecutorService pool = THREADS > 0 ? createPool() : null;
+
+    private final FlowExecution execution;
+    private final int firstId;
+    private final int lastId;
+
+    /**
+     * @param lastId highest id of the nodes to load, nodes are loaded from id 1
+     */
+    FlowNodePrefetcher(FlowExecution execution, int lastId) {
+        this(execution, 1, lastId);
+    }
+
+    /**
+     * @param firstId lowest id of the nodes to load
+     * @param lastId highest id of the nodes to load
+     */
+    FlowNodePrefetcher(FlowExecution execution, int firstId, int lastId) {
+        this.execution = execution;
+        this.firstId = firstId;
+        this.lastId = lastId;
+    }
+
+    @Override
+    public Iterator<FlowNode> iterator() {
+        return new AbstractIterator<FlowNode>() {
+            /** Loads of the nodes following the last one read, in id order */
+            private final Deque<Future<FlowNode>> pending = new ArrayDeque<>();
+            /** Id of the last node read */
+            private int id = firstId - 1;
+            /** Id of the last node submitted to be loaded */
+            private int submittedId = firstId - 1;
+            /** False once nodes are loaded by the reader */
+            private boolean prefetch = pool != null && WINDOW > 0;
+
+            @Override
+            protected FlowNode computeNext() {
+                while(id < lastId){
+                    id++;
+                    FlowNode node = prefetch ? next() : load(execution, id);
+                    if(node != null){
+                        return node;
+                    }
+                }
+                return endOfData();
+            }
+
+            private FlowNode next() {
+                while(submittedId < lastId && pending.size() < WINDOW){
+                    final int nextId = ++submittedId;
+                    pending.add(pool.submit(new Callable<FlowNode>() {
+                        @Override
+                        public FlowNode call() {
+                            return load(execution, nextId);
+                        }
+                    }));
+                }
+                Future<FlowNode> load = pending.poll();
+                try {
+                    return load.get();
+                } catch (InterruptedException e) {
+                    // reader is interrupted, nodes left are not prefetched anymore
+                    for(Future<FlowNode> f: pending){
+                        f.cancel(false);
+                    }
+                    pending.clear();
+                    prefetch = false;
+                    Thread.currentThread().interrupt();
+                    return load(execution, id);
+                } catch (ExecutionException e) {
+                    LOGGER.warn(String.format("Failed to load flow node %s of %s", id, execution), e.getCause());
+                    return null;
+                }
+            }
+        };
+    }
+
+    private static @CheckForNull FlowNode load(FlowExecution execution, int id) {
+        try {
+            return execution.getNode(Integer.toString(id));
+        } catch (IOException e) {
+            LOGGER.debug(String.format("No flow node with id %s in %s", id, execution), e);
+            return null;
+        }
+    }
+
+    private static ExecutorService createPool() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 10L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new NamingThreadFactory(new DaemonThreadFactory(), FlowNodePrefetcher.class.getSimpleName()));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
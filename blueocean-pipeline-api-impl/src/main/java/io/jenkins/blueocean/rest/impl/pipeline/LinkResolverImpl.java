@@ -8,6 +8,7 @@ import io.jenkins.blueocean.rest.hal.LinkResolver;
 import io.jenkins.blueocean.rest.model.BluePipeline;
 import io.jenkins.blueocean.rest.model.BlueRun;
 import io.jenkins.blueocean.rest.model.Resource;
+import io.jenkins.blueocean.service.embedded.rest.AbstractRunImpl;
 import io.jenkins.blueocean.service.embedded.rest.BluePipelineFactory;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
@@ -49,7 +50,7 @@ public class LinkResolverImpl extends LinkResolver {
             Queue.Executable executable = flowNode.getExecution().getOwner().getExecutable();
             if (executable != null && executable instanceof WorkflowRun) {
                 WorkflowRun run = (WorkflowRun) executable;
-                return (BlueRun) resolveRun(run);
+                return resolveRun(run);
             }
         } catch (IOException e) {
             logger.error(e.getMessage(), e);
@@ -59,11 +60,10 @@ public class LinkResolverImpl extends LinkResolver {
         return null;
     }
 
-    private Resource resolveRun(Run run){
+    private BlueRun resolveRun(Run run){
         Resource resource = BluePipelineFactory.resolve(run.getParent());
         if(resource instanceof BluePipeline){
-            BluePipeline pipeline = (BluePipeline) resource;
-            return pipeline.getRuns().get(run.getId());
+            return AbstractRunImpl.getBlueRun(run, (BluePipeline) resource);
         }
         return null;
     }
@@ -0,0 +1,481 @@
+package io.jenkins.blueocean.rest.impl.pipeline;
+
+import hudson.Extension;
+import hudson.model.listeners.RunListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.jenkins.blueocean.rest.hal.Link;
+import io.jenkins.blueocean.rest.model.BluePipelineNode;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.GraphListener;
+import org.jenkinsci.plugins.workflow.graph.FlowEndNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pipeline graph of a running pipeline, maintained from {@link GraphListener#onNewHead(FlowNode)} as the execution
+ * creates new nodes, so that polling nodes and steps of a running pipeline doesn't walk and rebuild the whole flow
+ * graph on every request.
+ *
+ * The graph is created on first request for a running run, seeded in background with the nodes created so far.
+ * Requests wait for the seeding up to their deadline, past it they get the graph as seeded so far, marked as
+ * truncated. It is dropped once the run completes, for the {@link PipelineGraphSnapshot} to be computed from it, and
+ * evicted when the run is finalized or deleted in any case, so aborted runs and runs without a snapshot don't keep
+ * their graph.
+ *
+ * Pipeline nodes computed from the graph are cached as well, so that viewers of a big running pipeline don't each
+ * compute the same nodes. Readers get the cached nodes right away while the heads moved since, and a single
+ * background task computes them again. Cached nodes are never older than {@link #MAX_STALENESS_MILLIS}, readers
+ * compute them themselves otherwise.
+ *
+ * @see PipelineNodeGraphBuilder#add(FlowNode)
+ */
+public class LivePipelineGraph {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LivePipelineGraph.class);
+
+    /**
+     * How old cached pipeline nodes of a running pipeline can get before readers stop getting them, in milliseconds
+     */
+    static final long MAX_STALENESS_MILLIS = Long.getLong(LivePipelineGraph.class.getName() + ".maxStalenessMillis", 3000);
+
+    /**
+     * Number of threads computing pipeline nodes in background, shared by all running pipelines
+     */
+    private static final int RECOMPUTE_THREADS = Integer.getInteger(LivePipelineGraph.class.getName() + ".recomputeThreads", 2);
+
+    /**
+     * Number of live graphs seeded at once, shared by all running pipelines
+     */
+    private static final int SEED_THREADS = Integer.getInteger(LivePipelineGraph.class.getName() + ".seedThreads", 2);
+
+    /**
+     * Number of recomputations waiting for a thread, further ones are dropped and readers keep getting the cached nodes
+     * until they are stale
+     */
+    private static final int RECOMPUTE_QUEUE_SIZE = 64;
+
+    /** Computes pipeline nodes of live graphs, only quick computations of seeded graphs run there */
+    private static final ExecutorService recomputePool = createPool(RECOMPUTE_THREADS,
+        new ArrayBlockingQueue<Runnable>(RECOMPUTE_QUEUE_SIZE), "recompute");
+    /** Seeds live graphs, seeding a big graph takes a while so it doesn't hold back recomputations */
+    private static final ExecutorService seedPool = createPool(SEED_THREADS,
+        new LinkedBlockingQueue<Runnable>(), "seed");
+
+    private static final Map<String, LivePipelineGraph> graphs = new HashMap<>();
+
+    private final PipelineNodeGraphBuilder builder;
+
+    /** Registered with the execution to forward new heads to this graph until it's closed */
+    private final HeadListener listener = new HeadListener(this);
+
+    /** Pipeline nodes last computed from this graph, null until first asked for */
+    private volatile PipelineNodes computedNodes;
+    /** Held while pipeline nodes are computed, so that concurrent readers wait for a single computation */
+    private final Object computeLock = new Object();
+    private final AtomicBoolean recomputing = new AtomicBoolean();
+
+    /** Nodes received while the graph is being seeded */
+    private final List<FlowNode> pending = new ArrayList<>();
+    /** Seeding of this graph, null until the graph is first asked for */
+    private Future<?> seeding;
+    private volatile boolean seeded;
+    private volatile boolean completed;
+
+    private LivePipelineGraph(WorkflowRun run, FlowExecution execution) {
+        this.builder = new PipelineNodeGraphBuilder(run, execution, new ArrayList<FlowNode>());
+        // until seeded
+        this.builder.setTruncated(true);
+    }
+
+    /**
+     * Gives graph builder of the given run, it's the live graph if the run is in progress or a builder that keeps
+     * only stages and parallel branches otherwise, see {@link PipelineNodeGraphBuilder#stagesOnly(WorkflowRun)}.
+     */
+    public static PipelineNodeGraphBuilder getGraphBuilder(WorkflowRun run) {
+        return getGraphBuilder(run, 0);
+    }
+
+    /**
+     * Same as {@link #getGraphBuilder(WorkflowRun)}, but graph is given as computed so far once the deadline is
+     * reached.
+     *
+     * @param deadline time in milliseconds to stop waiting for the graph at, 0 for no deadline
+     * @see PipelineNodeGraphBuilder#isTruncated()
+     */
+    static PipelineNodeGraphBuilder getGraphBuilder(WorkflowRun run, long deadline) {
+        LivePipelineGraph graph = getLiveGraph(run, deadline);
+        return graph == null ? PipelineNodeGraphBuilder.stagesOnly(run, deadline) : graph.builder;
+    }
+
+    /**
+     * Gives pipeline nodes of the given run. Nodes of a run in progress come from the cache of its live graph, they
+     * may lag behind the graph by at most {@link #MAX_STALENESS_MILLIS}. Nodes of other runs are computed by a builder
+     * that keeps only stages and parallel branches, see {@link PipelineNodeGraphBuilder#stagesOnly(WorkflowRun)}.
+     *
+     * @param template shape template to project future nodes from, null if there are none to project
+     * @param deadline time in milliseconds to stop computing the graph at, 0 for no deadline
+     * @see PipelineNodeGraphBuilder#getPipelineNodes(Link)
+     * @see PipelineNodeGraphBuilder#union(PipelineGraphSnapshot, Link)
+     */
+    static PipelineNodes getPipelineNodes(WorkflowRun run, Link parentLink, @CheckForNull PipelineGraphSnapshot template, long deadline) {
+        LivePipelineGraph graph = getLiveGraph(run, deadline);
+        if(graph == null){
+            return PipelineNodes.compute(PipelineNodeGraphBuilder.stagesOnly(run, deadline), parentLink, template);
+        }
+        return graph.getPipelineNodes(parentLink, template);
+    }
+
+    /**
+     * Gives a single pipeline node of the given run, computed from its live graph if it's in progress or from a
+     * builder that keeps only stages and parallel branches otherwise. No other node is computed and no future nodes
+     * are projected.
+     *
+     * @param deadline time in milliseconds to stop computing the graph at, 0 for no deadline
+     * @return node with the given id, null if the run has no such stage or parallel branch
+     * @see PipelineNodeGraphBuilder#getPipelineNode(String, Link)
+     */
+    static @CheckForNull BluePipelineNode getPipelineNode(WorkflowRun run, String id, Link parentLink, long deadline) {
+        LivePipelineGraph graph = getLiveGraph(run, deadline);
+        PipelineNodeGraphBuilder builder = graph == null ? PipelineNodeGraphBuilder.stagesOnly(run, deadline) : graph.builder;
+        return builder.getPipelineNode(id, parentLink);
+    }
+
+    /**
+     * Reads the stage from the live graph of the given run if one is maintained, no graph is created or seeded and
+     * no flow node is loaded.
+     *
+     * @return stage or parallel branch the given run is in, null if there is none or if the run has no seeded live
+     * graph
+     * @see PipelineNodeGraphBuilder#getCurrentStage()
+     */
+    static @CheckForNull FlowNode getCurrentStage(WorkflowRun run) {
+        LivePipelineGraph graph;
+        synchronized (graphs) {
+            graph = graphs.get(run.getExternalizableId());
+        }
+        if(graph == null || !graph.seeded || graph.completed){
+            return null;
+        }
+        return graph.builder.getCurrentStage();
+    }
+
+    /**
+     * @return live graph of the given run, seeded or as seeded by the deadline, null if the run is not in progress
+     */
+    private static @CheckForNull LivePipelineGraph getLiveGraph(WorkflowRun run, long deadline) {
+        LivePipelineGraph graph;
+        FlowExecution execution = run.getExecution();
+        synchronized (graphs) {
+            graph = graphs.get(run.getExternalizableId());
+            if(graph != null && !graph.completed && !run.isBuilding()){
+                // missed the end of the execution, this graph won't be complete
+                graphs.remove(run.getExternalizableId());
+                graph.close();
+                graph = null;
+            }
+            if(graph == null){
+                if(execution == null || execution.isComplete() || !run.isBuilding()){
+                    return null;
+                }
+                graph = new LivePipelineGraph(run, execution);
+                graphs.put(run.getExternalizableId(), graph);
+            }
+        }
+        graph.awaitSeeded(graph.seed(run, execution), deadline);
+        return graph;
+    }
+
+    private PipelineNodes getPipelineNodes(final Link parentLink, final @CheckForNull PipelineGraphSnapshot template) {
+        PipelineNodes nodes = computedNodes;
+        if(nodes != null && nodes.isFor(parentLink, template) && !nodes.isStale() && !nodes.isTruncated()){
+            if(nodes.getVersion() != builder.getVersion() && recomputing.compareAndSet(false, true)){
+                try {
+                    recomputePool.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                compute(parentLink, template);
+                            } catch (RuntimeException e) {
+                                LOGGER.warn("Failed to compute pipeline nodes of " + builder.getRun(), e);
+                            } finally {
+                                recomputing.set(false);
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // too many recomputations queued, a later reader submits it again
+                    recomputing.set(false);
+                }
+            }
+            return nodes;
+        }
+        synchronized (computeLock) {
+            // another reader might have computed them meanwhile
+            nodes = computedNodes;
+            if(nodes != null && nodes.isFor(parentLink, template) && !nodes.isStale() && !nodes.isTruncated()){
+                return nodes;
+            }
+        }
+        return compute(parentLink, template);
+    }
+
+    private PipelineNodes compute(Link parentLink, @CheckForNull PipelineGraphSnapshot template) {
+        synchronized (computeLock) {
+            PipelineNodes nodes = PipelineNodes.compute(builder, parentLink, template);
+            computedNodes = nodes;
+            return nodes;
+        }
+    }
+
+    /**
+     * Stops maintaining live graph of the given run.
+     *
+     * @return builder of the dropped graph if it covers the whole execution, null otherwise
+     */
+    public static @CheckForNull PipelineNodeGraphBuilder drop(WorkflowRun run) {
+        LivePipelineGraph graph;
+        synchronized (graphs) {
+            graph = graphs.remove(run.getExternalizableId());
+        }
+        if(graph == null){
+            return null;
+        }
+        graph.close();
+        return graph.completed ? graph.builder : null;
+    }
+
+    /**
+     * @return true if live graph of the given run is maintained
+     */
+    static boolean isLive(WorkflowRun run) {
+        synchronized (graphs) {
+            return graphs.containsKey(run.getExternalizableId());
+        }
+    }
+
+    /**
+     * Stops receiving new nodes. The execution keeps its listeners for as long as the run is loaded, so the listener
+     * lets go of this graph and of the flow nodes it holds.
+     */
+    private void close() {
+        listener.graph = null;
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Registers this graph to receive new nodes, then adds nodes created so far in background, in id order, so that
+     * the graph is valid at any time while it's seeded. Nodes received meanwhile are added after the seeded ones.
+     *
+     * @return seeding of this graph, started by the first caller
+     */
+    private synchronized Future<?> seed(final WorkflowRun run, final FlowExecution execution) {
+        if(seeding != null){
+            return seeding;
+        }
+        execution.addListener(listener);
+        seeding = seedPool.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for(FlowNode node: PipelineNodeGraphBuilder.streamNodes(execution)){
+                        add(node);
+                    }
+                    synchronized (pending) {
+                        for(FlowNode node: pending){
+                            add(node);
+                        }
+                        pending.clear();
+                        seeded = true;
+                    }
+                    builder.setTruncated(false);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Failed to seed pipeline graph of " + run, e);
+                    // next request starts over
+                    synchronized (graphs) {
+                        if(graphs.get(run.getExternalizableId()) == LivePipelineGraph.this){
+                            graphs.remove(run.getExternalizableId());
+                        }
+                    }
+                    close();
+                }
+            }
+        });
+        return seeding;
+    }
+
+    private void awaitSeeded(Future<?> seeding, long deadline) {
+        try {
+            if(deadline > 0){
+                seeding.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }else{
+                seeding.get();
+            }
+        } catch (TimeoutException e) {
+            // served as seeded so far, builder is marked as truncated
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.warn("Failed to seed pipeline graph of " + builder.getRun(), e);
+        }
+    }
+
+    private void onNewHead(FlowNode node) {
+        synchronized (pending) {
+            if(!seeded){
+                pending.add(node);
+                return;
+            }
+        }
+        add(node);
+    }
+
+    private void add(FlowNode node) {
+        if(completed){
+            return;
+        }
+        builder.add(node);
+        if(node instanceof FlowEndNode){
+            completed = true;
+            // execution is over, no more nodes to receive
+            listener.graph = null;
+        }
+    }
+
+    /**
+     * Forwards new heads of an execution to its live graph while there is one.
+     */
+    private static final class HeadListener implements GraphListener {
+        private volatile LivePipelineGraph graph;
+
+        private HeadListener(LivePipelineGraph graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public void onNewHead(FlowNode node) {
+            LivePipelineGraph g = graph;
+            if(g != null){
+                g.onNewHead(node);
+            }
+        }
+    }
+
+    /**
+     * Evicts live graph of each run once it's finalized or deleted, whether or not its snapshot is written.
+     */
+    @Extension
+    public static class Evictor extends RunListener<WorkflowRun> {
+        @Override
+        public void onFinalized(WorkflowRun run) {
+            drop(run);
+        }
+
+        @Override
+        public void onDeleted(WorkflowRun run) {
+            drop(run);
+        }
+    }
+
+    private static ExecutorService createPool(int threads, BlockingQueue<Runnable> queue, String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 10L, TimeUnit.SECONDS, queue,
+            new NamingThreadFactory(new DaemonThreadFactory(), LivePipelineGraph.class.getSimpleName() + "." + name),
+            new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Pipeline nodes computed from a graph, along with the graph they were computed from and its version at the time.
+     * Nodes are kept as records, {@link PipelineGraphSnapshot#ofNodes(PipelineNodeGraphBuilder, List, int)}, so the
+     * cache doesn't retain flow nodes; node objects served are created from them for each request.
+     */
+    static final class PipelineNodes {
+        private final PipelineNodeGraphBuilder builder;
+        private final int version;
+        private final PipelineGraphSnapshot snapshot;
+        private final Link parentLink;
+        private final PipelineGraphSnapshot template;
+        private final boolean truncated;
+        private final long computedAt = System.currentTimeMillis();
+
+        private PipelineNodes(PipelineNodeGraphBuilder builder, int version, boolean truncated, PipelineGraphSnapshot snapshot,
+                              Link parentLink, @CheckForNull PipelineGraphSnapshot template) {
+            this.builder = builder;
+            this.version = version;
+            this.truncated = truncated;
+            this.snapshot = snapshot;
+            this.parentLink = parentLink;
+            this.template = template;
+        }
+
+        private static PipelineNodes compute(PipelineNodeGraphBuilder builder, Link parentLink, @CheckForNull PipelineGraphSnapshot template) {
+            // version is taken first, changes made while nodes are computed are listed again next time
+            boolean truncated = builder.isTruncated();
+            int version = builder.getVersion();
+            List<BluePipelineNode> nodes = template != null
+                ? builder.union(template, parentLink)
+                : builder.getPipelineNodes(parentLink);
+            return new PipelineNodes(builder, version, truncated, PipelineGraphSnapshot.ofNodes(builder, nodes, version),
+                parentLink, template);
+        }
+
+        PipelineNodeGraphBuilder getGraphBuilder() {
+            return builder;
+        }
+
+        /**
+         * @return version of the graph these nodes were computed at
+         */
+        int getVersion() {
+            return version;
+        }
+
+        /**
+         * @return nodes of the given run, created from the node records
+         */
+        List<BluePipelineNode> getNodes(WorkflowRun run) {
+            List<BluePipelineNode> nodes = new ArrayList<>(snapshot.getNodes().size());
+            for(PipelineGraphSnapshot.Node n: snapshot.getNodes()){
+                nodes.add(new PipelineSnapshotNodeImpl(run, n.isInactive() ? template : snapshot, n, parentLink));
+            }
+            return nodes;
+        }
+
+        /**
+         * @return true if the graph didn't have all the nodes of the run when these nodes were computed
+         * @see PipelineNodeGraphBuilder#isTruncated()
+         */
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        private boolean isFor(Link parentLink, @CheckForNull PipelineGraphSnapshot template) {
+            return this.parentLink.getHref().equals(parentLink.getHref()) && this.template == template;
+        }
+
+        private boolean isStale() {
+            return System.currentTimeMillis() - computedAt > MAX_STALENESS_MILLIS;
+        }
+    }
+}
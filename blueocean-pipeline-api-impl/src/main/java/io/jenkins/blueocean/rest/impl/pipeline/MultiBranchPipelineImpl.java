@@ -1,7 +1,6 @@
 package io.jenkins.blueocean.rest.impl.pipeline;
 
-import com.google.common.collect.Iterators;
-import com.google.common.collect.Lists;
+import com.google.common.collect.AbstractIterator;
 import hudson.Extension;
 import hudson.model.Item;
 import hudson.model.Job;
@@ -27,10 +26,13 @@ import io.jenkins.blueocean.rest.model.Container;
 import io.jenkins.blueocean.rest.model.Containers;
 import io.jenkins.blueocean.rest.model.Resource;
 import io.jenkins.blueocean.service.embedded.rest.AbstractPipelineImpl;
+import io.jenkins.blueocean.service.embedded.rest.AbstractRunImpl;
 import io.jenkins.blueocean.service.embedded.rest.BlueFavoriteResolver;
 import io.jenkins.blueocean.service.embedded.rest.BluePipelineFactory;
+import io.jenkins.blueocean.service.embedded.rest.ContainerFilter;
 import io.jenkins.blueocean.service.embedded.rest.FavoriteImpl;
 import io.jenkins.blueocean.service.embedded.rest.OrganizationImpl;
+import io.jenkins.blueocean.service.embedded.rest.RunSummaryIndex;
 import io.jenkins.blueocean.service.embedded.util.FavoriteUtil;
 import jenkins.branch.MultiBranchProject;
 import jenkins.scm.api.SCMHead;
@@ -40,11 +42,12 @@ import org.kohsuke.stapler.json.JsonBody;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import static io.jenkins.blueocean.rest.model.KnownCapabilities.JENKINS_MULTI_BRANCH_PROJECT;
 
@@ -174,18 +177,17 @@ public class MultiBranchPipelineImpl extends BlueMultiBranchPipeline {
                 Collection<Job>  jbs = mbp.getAllJobs();
                 if(jbs.size() > 0){
                     Job[] jobs = jbs.toArray(new Job[jbs.size()]);
+                    // end times of last runs are read once, not on each comparison
+                    final Map<Job, Long> endTimes = new HashMap<>();
+                    for(Job job: jobs){
+                        RunSummaryIndex.Summary last = RunSummaryIndex.getLastSummary(job);
+                        endTimes.put(job, last == null ? 0 : last.getStartTime() + last.getDurationInMillis());
+                    }
                     Arrays.sort(jobs, new Comparator<Job>() {
                         @Override
                         public int compare(Job o1, Job o2) {
-                            long t1 = 0;
-                            if(o1.getLastBuild() != null){
-                                t1 = o1.getLastBuild().getTimeInMillis() + o1.getLastBuild().getDuration();
-                            }
-
-                            long t2 = 0;
-                            if(o2.getLastBuild() != null){
-                                t2 = o2.getLastBuild().getTimeInMillis() + o2.getLastBuild().getDuration();
-                            }
+                            long t1 = endTimes.get(o1);
+                            long t2 = endTimes.get(o2);
 
                             if(t1<2){
                                 return -1;
@@ -241,9 +243,8 @@ public class MultiBranchPipelineImpl extends BlueMultiBranchPipeline {
         int count=0;
         for(Job j:jobs){
             if(pullRequests && isPullRequest(j) || !pullRequests && !isPullRequest(j)) {
-                j.getBuildStatusUrl();
-                Run run = j.getLastBuild();
-                if (run!=null && run.getResult() == result) {
+                RunSummaryIndex.Summary run = RunSummaryIndex.getLastSummary(j);
+                if (run!=null && run.getResult().name().equals(result.toString())) {
                     count++;
                 }
             }
@@ -289,20 +290,12 @@ public class MultiBranchPipelineImpl extends BlueMultiBranchPipeline {
 
             @Override
             public Iterator<BlueRun> iterator() {
-                List<BlueRun> c = new ArrayList<>();
-                for(final BluePipeline b: getBranches()) {
-                    for(final BlueRun r: b.getRuns()) {
-                        c.add(r);
-                    }
-                }
-                Collections.sort(c, new Comparator<BlueRun>() {
-                    @Override
-                    public int compare(BlueRun o1, BlueRun o2) {
-                        return o2.getStartTime().compareTo(o1.getStartTime());
-                    }
-                });
+                return iterator(0, Integer.MAX_VALUE);
+            }
 
-                return c.iterator();
+            @Override
+            public Iterator<BlueRun> iterator(int start, int limit) {
+                return mergeRuns(start, limit);
             }
 
             @Override
@@ -312,6 +305,83 @@ public class MultiBranchPipelineImpl extends BlueMultiBranchPipeline {
         };
     }
 
+    /**
+     * Runs of all branches, newest first by start time, merged from the runs of each branch that are newest first as
+     * well. Only run summaries of the branches are compared, see {@link RunSummaryIndex}, and only runs of the
+     * requested page are loaded. Runs that are gone are left out before the page window is counted.
+     */
+    @SuppressWarnings("unchecked")
+    private Iterator<BlueRun> mergeRuns(final int start, final int limit) {
+        Collection<Job> jobs = ContainerFilter.filter(mbp.getAllJobs());
+        Link branches = getLink().rel("branches");
+        final PriorityQueue<BranchRuns> heads = new PriorityQueue<>(Math.max(jobs.size(), 1), BranchRuns.NEWEST_HEAD_FIRST);
+        for(Job job: jobs){
+            BranchRuns runs = new BranchRuns(new BranchImpl(job, branches),
+                RunSummaryIndex.getSummaries(job).iterator());
+            if(runs.advance()){
+                heads.add(runs);
+            }
+        }
+        return new AbstractIterator<BlueRun>() {
+            private int skipped;
+            private int taken;
+
+            @Override
+            protected BlueRun computeNext() {
+                while(taken < limit && !heads.isEmpty()){
+                    BranchRuns runs = heads.poll();
+                    RunSummaryIndex.Summary summary = runs.head;
+                    if(runs.advance()){
+                        heads.add(runs);
+                    }
+                    // runs that are gone count neither to the skipped ones nor to the page
+                    if(!RunSummaryIndex.exists(runs.branch.job, summary)){
+                        continue;
+                    }
+                    if(skipped < start){
+                        skipped++;
+                        continue;
+                    }
+                    Run run = runs.branch.job.getBuildByNumber(summary.getNumber());
+                    if(run != null){
+                        taken++;
+                        return AbstractRunImpl.getBlueRun(run, runs.branch);
+                    }
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    /**
+     * Run summaries of a branch, newest first, with the one not merged yet at their head
+     */
+    private static class BranchRuns {
+        private static final Comparator<BranchRuns> NEWEST_HEAD_FIRST = new Comparator<BranchRuns>() {
+            @Override
+            public int compare(BranchRuns o1, BranchRuns o2) {
+                return Long.compare(o2.head.getStartTime(), o1.head.getStartTime());
+            }
+        };
+
+        private final BranchImpl branch;
+        private final Iterator<RunSummaryIndex.Summary> runs;
+        private RunSummaryIndex.Summary head;
+
+        private BranchRuns(BranchImpl branch, Iterator<RunSummaryIndex.Summary> runs) {
+            this.branch = branch;
+            this.runs = runs;
+        }
+
+        /**
+         * @return false if there are no runs left
+         */
+        private boolean advance() {
+            head = runs.hasNext() ? runs.next() : null;
+            return head != null;
+        }
+    }
+
     @Override
     public Collection<BlueActionProxy> getActions() {
         return PipelineImpl.getActionProxies(mbp.getAllActions(), this);
@@ -374,6 +444,6 @@ public class MultiBranchPipelineImpl extends BlueMultiBranchPipeline {
 
     @Navigable
     public Container<Resource> getActivities() {
-        return Containers.fromResource(getLink(), Lists.newArrayList(Iterators.concat(getQueue().iterator(), getRuns().iterator())));
+        return Containers.<Resource>concat(getLink(), getQueue(), getRuns());
     }
 }
@@ -0,0 +1,44 @@
+package io.jenkins.blueocean.rest.impl.pipeline;
+
+import io.jenkins.blueocean.rest.hal.Link;
+import io.jenkins.blueocean.rest.model.Resource;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Stage or parallel branch a running pipeline is in, read from its live graph or computed from the current heads of
+ * its execution, without building the pipeline graph. Link points to the pipeline node of the stage.
+ *
+ * @see PipelineNodeUtil#getCurrentStage(org.jenkinsci.plugins.workflow.flow.FlowExecution)
+ * @see PipelineRunImpl#getCurrentStage()
+ * @see PipelineRunImpl#getLiveCurrentStage()
+ */
+@ExportedBean(defaultVisibility = 2)
+public class PipelineCurrentStage extends Resource {
+    public static final String ID = "id";
+    public static final String DISPLAY_NAME = "displayName";
+
+    private final FlowNode node;
+    private final Link self;
+
+    public PipelineCurrentStage(FlowNode node, Link nodesLink) {
+        this.node = node;
+        this.self = nodesLink.rel(node.getId());
+    }
+
+    @Exported(name = ID)
+    public String getId() {
+        return node.getId();
+    }
+
+    @Exported(name = DISPLAY_NAME)
+    public String getDisplayName() {
+        return PipelineNodeUtil.getDisplayName(node);
+    }
+
+    @Override
+    public Link getLink() {
+        return self;
+    }
+}
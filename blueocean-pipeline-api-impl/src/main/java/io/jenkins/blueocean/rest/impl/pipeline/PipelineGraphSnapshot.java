@@ -0,0 +1,682 @@
+package io.jenkins.blueocean.rest.impl.pipeline;
+
+import hudson.Extension;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import io.jenkins.blueocean.rest.hal.Link;
+import io.jenkins.blueocean.rest.model.BluePipelineNode;
+import io.jenkins.blueocean.rest.model.BluePipelineStep;
+import io.jenkins.blueocean.rest.model.BlueRun;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Computed pipeline graph of a completed run: stage and parallel branch nodes with their edges, steps of the run and
+ * status and timing of each of them.
+ *
+ * A completed run never changes, so the graph is computed once and persisted next to the build record. Nodes and
+ * steps of a completed run are then served from the snapshot instead of walking the flow graph on each request.
+ *
+ * @see PipelineNodeContainerImpl
+ */
+public class PipelineGraphSnapshot {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineGraphSnapshot.class);
+
+    /**
+     * Version of the persisted format, snapshots written with any other version are regenerated on read.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    static final String FILE_NAME = "blueocean-graph.dat";
+
+    /**
+     * Shape templates by job, see {@link #getShapeTemplate(WorkflowJob)}
+     */
+    private static final Map<WorkflowJob, ShapeTemplate> shapeTemplates =
+        Collections.synchronizedMap(new WeakHashMap<WorkflowJob, ShapeTemplate>());
+
+    /**
+     * Snapshots being computed, by run, see {@link #get(WorkflowRun, long)}
+     */
+    private static final Map<String, Computation> computations = new HashMap<>();
+
+    private final List<Node> nodes;
+    private final List<Step> steps;
+    private final int version;
+
+    /** True for a snapshot of a graph that ran out of its time budget, such snapshot is not persisted */
+    private boolean truncated;
+    /** True for a snapshot of the nodes of a run in progress, it has no steps, see {@link #ofNodes(PipelineNodeGraphBuilder, List, int)} */
+    private boolean live;
+    private final Map<String, Node> nodeMap = new LinkedHashMap<>();
+    private final Map<String, Step> stepMap = new LinkedHashMap<>();
+
+    PipelineGraphSnapshot(List<Node> nodes, List<Step> steps, int version) {
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.steps = Collections.unmodifiableList(steps);
+        this.version = version;
+        for(Node n: nodes){
+            nodeMap.put(n.getId(), n);
+        }
+        for(Step s: steps){
+            stepMap.put(s.getId(), s);
+        }
+    }
+
+    /**
+     * @return stage and parallel branch nodes, in the order they were computed by {@link PipelineNodeGraphBuilder}
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return version of the graph the snapshot was computed from
+     * @see PipelineNodeGraphBuilder#getVersion()
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true if this snapshot has only the nodes and steps resolved before the graph build ran out of time
+     * @see PipelineNodeGraphBuilder#isTruncated()
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return true if this is a snapshot of the nodes of a run in progress, steps of its nodes are to be looked up in
+     * the live graph of the run
+     */
+    public boolean isLive() {
+        return live;
+    }
+
+    /**
+     * @return all steps of the run
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return steps of the given stage or parallel branch node
+     */
+    public List<Step> getSteps(Node node) {
+        List<Step> s = new ArrayList<>();
+        for(String id: node.getStepIds()){
+            Step step = stepMap.get(id);
+            if(step != null){
+                s.add(step);
+            }
+        }
+        return s;
+    }
+
+    public @CheckForNull Node getNode(String id){
+        return nodeMap.get(id);
+    }
+
+    public @CheckForNull Step getStep(String id){
+        return stepMap.get(id);
+    }
+
+    /**
+     * Same as {@link PipelineNodeGraphBuilder#union(PipelineNodeGraphBuilder, Link)}: nodes of the given snapshot
+     * not yet reached by this run are appended as inactive nodes and the last node of this run is patched to point
+     * to the first of them.
+     *
+     * @param future snapshot of the last successful run, typically its {@link #getShapeTemplate(WorkflowJob) shape template}
+     * @return union of nodes of this snapshot and future nodes
+     */
+    public List<Node> union(PipelineGraphSnapshot future) {
+        if(nodes.size() >= future.nodes.size()){
+            return nodes;
+        }
+        List<Node> union = new ArrayList<>(nodes);
+        int currentNodeSize = nodes.size();
+        String firstFutureNodeId = future.nodes.get(currentNodeSize).getId();
+        if(currentNodeSize > 0){
+            Node latestNode = nodes.get(currentNodeSize - 1);
+            if(!latestNode.isParallelBranch()){
+                union.set(currentNodeSize - 1, latestNode.withEdge(firstFutureNodeId));
+            }else{
+                // patch all siblings of the last branch, they all lead to the next node
+                for(int i = 0; i < currentNodeSize; i++){
+                    Node parent = nodes.get(i);
+                    if(!parent.isParallelBranch() && parent.getEdges().contains(latestNode.getId())){
+                        for(int j = 0; j < currentNodeSize; j++){
+                            Node c = union.get(j);
+                            if(c.isParallelBranch() && parent.getEdges().contains(c.getId())){
+                                union.set(j, c.withEdge(firstFutureNodeId));
+                            }
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        for(int i = currentNodeSize; i < future.nodes.size(); i++){
+            union.add(future.nodes.get(i).asInactive());
+        }
+        return union;
+    }
+
+    /**
+     * Gives stage and parallel branch skeleton of the last successful run of the given job, it's what failed and in
+     * progress runs project their future nodes from. The skeleton is derived once from the snapshot of that run and
+     * kept until a newer run succeeds.
+     *
+     * @return snapshot holding inactive nodes of the last successful run and no steps, null if the job has no successful
+     * run
+     * @see #union(PipelineGraphSnapshot)
+     * @see PipelineNodeGraphBuilder#union(PipelineGraphSnapshot, Link)
+     */
+    public static @CheckForNull PipelineGraphSnapshot getShapeTemplate(WorkflowJob job) {
+        WorkflowRun lastSuccessfulBuild = job.getLastSuccessfulBuild();
+        if(lastSuccessfulBuild == null){
+            return null;
+        }
+        ShapeTemplate template = shapeTemplates.get(job);
+        if(template != null && template.buildNumber == lastSuccessfulBuild.getNumber()){
+            return template.snapshot;
+        }
+        PipelineGraphSnapshot snapshot = get(lastSuccessfulBuild);
+        if(snapshot == null){
+            return null;
+        }
+        List<Node> nodes = new ArrayList<>();
+        for(Node n: snapshot.nodes){
+            nodes.add(n.asInactive());
+        }
+        template = new ShapeTemplate(lastSuccessfulBuild.getNumber(), new PipelineGraphSnapshot(nodes, Collections.<Step>emptyList(), snapshot.version));
+        shapeTemplates.put(job, template);
+        return template.snapshot;
+    }
+
+    private static class ShapeTemplate {
+        private final int buildNumber;
+        private final PipelineGraphSnapshot snapshot;
+
+        private ShapeTemplate(int buildNumber, PipelineGraphSnapshot snapshot) {
+            this.buildNumber = buildNumber;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Gives snapshot of a completed run, computing and persisting it if it's missing or in an older format.
+     *
+     * @return snapshot of the run, null if the run is still in progress
+     */
+    public static @CheckForNull PipelineGraphSnapshot get(WorkflowRun run) {
+        return get(run, 0);
+    }
+
+    /**
+     * Same as {@link #get(WorkflowRun)}, but if computing the snapshot runs past the given deadline, gives a
+     * truncated snapshot of the nodes resolved so far.
+     *
+     * Missing snapshot of a run is computed once in background however many requests ask for it, requests wait for
+     * that computation up to their deadline. Only the complete snapshot is persisted.
+     *
+     * @param deadline time in milliseconds to stop waiting for the snapshot at, 0 for no deadline
+     * @see #isTruncated()
+     * @see PipelineNodeGraphBuilder#newDeadline()
+     */
+    static @CheckForNull PipelineGraphSnapshot get(WorkflowRun run, long deadline) {
+        if(!isCompleted(run)){
+            return null;
+        }
+        PipelineGraphSnapshot snapshot = load(run);
+        if(snapshot != null){
+            return snapshot;
+        }
+        Computation computation;
+        synchronized (computations) {
+            computation = computations.get(run.getExternalizableId());
+            if(computation == null){
+                computation = new Computation(run);
+                computations.put(run.getExternalizableId(), computation);
+                computation.future = Timer.get().submit(computation);
+            }
+        }
+        return computation.await(deadline);
+    }
+
+    /**
+     * Computation of the snapshot of a completed run, its graph can be read while nodes are added to it
+     */
+    private static final class Computation implements Callable<PipelineGraphSnapshot> {
+        private final WorkflowRun run;
+        private final PipelineNodeGraphBuilder builder;
+        private volatile Future<PipelineGraphSnapshot> future;
+
+        private Computation(WorkflowRun run) {
+            this.run = run;
+            this.builder = PipelineNodeGraphBuilder.recordingSteps(run, run.getExecution());
+        }
+
+        @Override
+        public PipelineGraphSnapshot call() {
+            try {
+                // the previous computation might have saved it meanwhile
+                PipelineGraphSnapshot snapshot = load(run);
+                if(snapshot != null){
+                    return snapshot;
+                }
+                for(FlowNode node: PipelineNodeGraphBuilder.streamNodes(run.getExecution())){
+                    builder.add(node);
+                }
+                builder.finishStepRecords();
+                snapshot = create(builder);
+                try {
+                    snapshot.save(run);
+                } catch (IOException e) {
+                    LOGGER.error(String.format("Failed to save pipeline graph of %s: %s", run, e.getMessage()), e);
+                }
+                return snapshot;
+            } finally {
+                synchronized (computations) {
+                    computations.remove(run.getExternalizableId());
+                }
+            }
+        }
+
+        private @CheckForNull PipelineGraphSnapshot await(long deadline) {
+            try {
+                if(deadline > 0){
+                    return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
+                return future.get();
+            } catch (TimeoutException e) {
+                // served as computed so far
+                LOGGER.info(String.format("Pipeline graph of %s ran out of time budget, it's still being computed", run));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                LOGGER.warn("Failed to compute pipeline graph of " + run, e);
+                return null;
+            }
+            PipelineGraphSnapshot snapshot = create(builder);
+            snapshot.truncated = true;
+            return snapshot;
+        }
+    }
+
+    static boolean isCompleted(WorkflowRun run){
+        FlowExecution execution = run.getExecution();
+        return execution != null && execution.isComplete() && !run.isBuilding();
+    }
+
+    /**
+     * Computes snapshot of the given run, streaming its flow nodes once and keeping only stages, parallel branches
+     * and records of the steps, see {@link PipelineNodeGraphBuilder#withStepRecords(WorkflowRun, long)}.
+     */
+    public static PipelineGraphSnapshot create(WorkflowRun run) {
+        return create(PipelineNodeGraphBuilder.withStepRecords(run, 0));
+    }
+
+    /**
+     * @param builder builder that collected step records, or one that retains all nodes such as the live graph of
+     *                the run
+     */
+    static PipelineGraphSnapshot create(PipelineNodeGraphBuilder builder) {
+        Link link = new Link("/");
+
+        Map<String, Step> steps = new LinkedHashMap<>();
+        List<Step> stepRecords = builder.getStepRecords();
+        if(stepRecords != null){
+            for(Step s: stepRecords){
+                steps.put(s.getId(), s);
+            }
+        }else{
+            for(FlowNode n: builder.getAllSteps()){
+                steps.put(n.getId(), new Step(new PipelineStepImpl(n, builder, link)));
+            }
+        }
+
+        List<Node> nodes = new ArrayList<>();
+        for(BluePipelineNode n: builder.getPipelineNodes(link)){
+            FlowNode flowNode = builder.getNodeById(n.getId());
+            List<String> stepIds = new ArrayList<>();
+            if(flowNode != null && stepRecords != null){
+                stepIds.addAll(builder.getStepIds(flowNode));
+            }else if(flowNode != null){
+                for(FlowNode s: builder.getSteps(flowNode)){
+                    if(!steps.containsKey(s.getId())){
+                        steps.put(s.getId(), new Step(new PipelineStepImpl(s, builder, link)));
+                    }
+                    stepIds.add(s.getId());
+                }
+            }
+            nodes.add(new Node(n, flowNode != null && builder.isParallelBranch(flowNode), stepIds));
+        }
+        return new PipelineGraphSnapshot(nodes, new ArrayList<>(steps.values()), builder.getVersion());
+    }
+
+    /**
+     * Snapshot of pipeline nodes computed from the graph of a run in progress, nodes projected from another run
+     * included. It holds node records only, neither flow nodes nor the graph, so it can be cached cheaply while the
+     * graph keeps changing. It has no steps, they change as well.
+     *
+     * @param nodes nodes computed by the given builder, see {@link PipelineNodeGraphBuilder#getPipelineNodes(Link)}
+     * @param version version of the graph the nodes were computed at
+     */
+    static PipelineGraphSnapshot ofNodes(PipelineNodeGraphBuilder builder, List<BluePipelineNode> nodes, int version) {
+        List<Node> records = new ArrayList<>(nodes.size());
+        for(BluePipelineNode n: nodes){
+            if(n instanceof PipelineSnapshotNodeImpl){
+                records.add(((PipelineSnapshotNodeImpl) n).getNode());
+            }else{
+                FlowNode flowNode = builder.getNodeById(n.getId());
+                records.add(new Node(n, flowNode != null && builder.isParallelBranch(flowNode), Collections.<String>emptyList()));
+            }
+        }
+        PipelineGraphSnapshot snapshot = new PipelineGraphSnapshot(records, Collections.<Step>emptyList(), version);
+        snapshot.live = true;
+        return snapshot;
+    }
+
+    static File getFile(WorkflowRun run){
+        return new File(run.getRootDir(), FILE_NAME);
+    }
+
+    static @CheckForNull PipelineGraphSnapshot load(WorkflowRun run) {
+        File file = getFile(run);
+        if(!file.exists()){
+            return null;
+        }
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != FORMAT_VERSION){
+                return null;
+            }
+            int version = in.readInt();
+            int nodeCount = in.readInt();
+            List<Node> nodes = new ArrayList<>(nodeCount);
+            for(int i = 0; i < nodeCount; i++){
+                nodes.add(Node.read(in));
+            }
+            int stepCount = in.readInt();
+            List<Step> steps = new ArrayList<>(stepCount);
+            for(int i = 0; i < stepCount; i++){
+                steps.add(new Step(in));
+            }
+            return new PipelineGraphSnapshot(nodes, steps, version);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn(String.format("Failed to read pipeline graph of %s, it will be recomputed: %s", run, e.getMessage()));
+            return null;
+        }
+    }
+
+    void save(WorkflowRun run) throws IOException {
+        File file = getFile(run);
+        File tmp = File.createTempFile(FILE_NAME, ".tmp", file.getParentFile());
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(version);
+            out.writeInt(nodes.size());
+            for(Node n: nodes){
+                n.write(out);
+            }
+            out.writeInt(steps.size());
+            for(Step s: steps){
+                s.write(out);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Step of a run, as exposed by {@link BluePipelineStep}.
+     */
+    public static class Step {
+        private final String id;
+        private final String displayName;
+        private final BlueRun.BlueRunResult result;
+        private final BlueRun.BlueRunState state;
+        private final Long startTime;
+        private final Long durationInMillis;
+
+        Step(String id, String displayName, BlueRun.BlueRunResult result, BlueRun.BlueRunState state,
+             Long startTime, Long durationInMillis) {
+            this.id = id;
+            this.displayName = displayName;
+            this.result = result;
+            this.state = state;
+            this.startTime = startTime;
+            this.durationInMillis = durationInMillis;
+        }
+
+        Step(BluePipelineStep step) {
+            this(step.getId(), step.getDisplayName(), step.getResult(), step.getStateObj(),
+                step.getStartTime() == null ? null : step.getStartTime().getTime(), step.getDurationInMillis());
+        }
+
+        Step(DataInputStream in) throws IOException {
+            this(in.readUTF(), readString(in), readEnum(in, BlueRun.BlueRunResult.class),
+                readEnum(in, BlueRun.BlueRunState.class), readLong(in), readLong(in));
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(id);
+            writeString(out, displayName);
+            writeString(out, result == null ? null : result.name());
+            writeString(out, state == null ? null : state.name());
+            writeLong(out, startTime);
+            writeLong(out, durationInMillis);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public @CheckForNull BlueRun.BlueRunResult getResult() {
+            return result;
+        }
+
+        public @CheckForNull BlueRun.BlueRunState getState() {
+            return state;
+        }
+
+        public @CheckForNull Long getStartTime() {
+            return startTime;
+        }
+
+        public @CheckForNull Long getDurationInMillis() {
+            return durationInMillis;
+        }
+    }
+
+    /**
+     * Stage or parallel branch node, as exposed by {@link BluePipelineNode}.
+     */
+    public static class Node extends Step {
+        private final boolean parallelBranch;
+        private final boolean inactive;
+        private final List<String> edges;
+        private final List<String> stepIds;
+
+        Node(String id, String displayName, BlueRun.BlueRunResult result, BlueRun.BlueRunState state,
+             Long startTime, Long durationInMillis, boolean parallelBranch, boolean inactive,
+             List<String> edges, List<String> stepIds) {
+            super(id, displayName, result, state, startTime, durationInMillis);
+            this.parallelBranch = parallelBranch;
+            this.inactive = inactive;
+            this.edges = Collections.unmodifiableList(edges);
+            this.stepIds = Collections.unmodifiableList(stepIds);
+        }
+
+        Node(BluePipelineNode node, boolean parallelBranch, List<String> stepIds) {
+            super(node);
+            this.parallelBranch = parallelBranch;
+            this.inactive = false;
+            List<String> edges = new ArrayList<>();
+            for(BluePipelineNode.Edge e: node.getEdges()){
+                edges.add(e.getId());
+            }
+            this.edges = Collections.unmodifiableList(edges);
+            this.stepIds = Collections.unmodifiableList(stepIds);
+        }
+
+        static Node read(DataInputStream in) throws IOException {
+            Step step = new Step(in);
+            boolean parallelBranch = in.readBoolean();
+            List<String> edges = readStrings(in);
+            List<String> stepIds = readStrings(in);
+            return new Node(step.getId(), step.getDisplayName(), step.getResult(), step.getState(),
+                step.getStartTime(), step.getDurationInMillis(), parallelBranch, false, edges, stepIds);
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            super.write(out);
+            out.writeBoolean(parallelBranch);
+            writeStrings(out, edges);
+            writeStrings(out, stepIds);
+        }
+
+        /**
+         * @return this node with an extra edge
+         */
+        Node withEdge(String id){
+            List<String> e = new ArrayList<>(edges);
+            e.add(id);
+            return new Node(getId(), getDisplayName(), getResult(), getState(), getStartTime(), getDurationInMillis(),
+                parallelBranch, inactive, e, stepIds);
+        }
+
+        /**
+         * @return this node as a future node of another run: not executed yet, so no status, timing or steps
+         */
+        Node asInactive(){
+            return new Node(getId(), getDisplayName(), null, null, null, null, parallelBranch, true,
+                edges, Collections.<String>emptyList());
+        }
+
+        public boolean isParallelBranch() {
+            return parallelBranch;
+        }
+
+        /**
+         * @return true if this node is projected from the last successful run and not executed by this run
+         */
+        public boolean isInactive() {
+            return inactive;
+        }
+
+        public List<String> getEdges() {
+            return edges;
+        }
+
+        public List<String> getStepIds() {
+            return stepIds;
+        }
+    }
+
+    /**
+     * Persists snapshot of each pipeline run once it completes.
+     */
+    @Extension
+    public static class SnapshotWriter extends RunListener<WorkflowRun> {
+        @Override
+        public void onCompleted(final WorkflowRun run, @Nonnull TaskListener listener) {
+            // taken right away, the live graph is evicted once the run is finalized
+            final PipelineNodeGraphBuilder live = LivePipelineGraph.drop(run);
+            Timer.get().submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // live graph of the run has seen the whole execution, no need to walk the flow graph again
+                        PipelineNodeGraphBuilder builder = live;
+                        if(builder == null){
+                            builder = PipelineNodeGraphBuilder.withStepRecords(run, 0);
+                        }
+                        create(builder).save(run);
+                    } catch (IOException e) {
+                        LOGGER.error(String.format("Failed to save pipeline graph of %s: %s", run, e.getMessage()), e);
+                    }
+                }
+            });
+        }
+    }
+
+    private static void writeString(DataOutputStream out, @CheckForNull String s) throws IOException {
+        out.writeBoolean(s != null);
+        if(s != null){
+            out.writeUTF(s);
+        }
+    }
+
+    private static @CheckForNull String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeLong(DataOutputStream out, @CheckForNull Long l) throws IOException {
+        out.writeBoolean(l != null);
+        if(l != null){
+            out.writeLong(l);
+        }
+    }
+
+    private static @CheckForNull Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static <E extends Enum<E>> E readEnum(DataInputStream in, Class<E> type) throws IOException {
+        String name = readString(in);
+        return name == null ? null : Enum.valueOf(type, name);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for(String s: strings){
+            out.writeUTF(s);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> strings = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+}
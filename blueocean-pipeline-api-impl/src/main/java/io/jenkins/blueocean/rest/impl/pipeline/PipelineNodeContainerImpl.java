@@ -8,6 +8,7 @@ import io.jenkins.blueocean.rest.model.BluePipelineNodeContainer;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 
+import javax.annotation.CheckForNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -15,39 +16,115 @@ import java.util.List;
 import java.util.Map;
 
 /**
+ * Nodes of a pipeline run. Listing gives graph version in {@link PipelineNodeUtil#GRAPH_VERSION_HEADER} header, with
+ * {@link PipelineNodeUtil#SINCE_PARAMETER} query parameter only nodes changed since the given version are listed.
+ *
+ * Graph is computed within a time budget, if it runs out the nodes resolved so far are listed and the response has
+ * {@link PipelineNodeUtil#GRAPH_TRUNCATED_HEADER} header.
+ *
  * @author Vivek Pandey
  */
 public class PipelineNodeContainerImpl extends BluePipelineNodeContainer {
     private final WorkflowRun run;
     private final Map<String, BluePipelineNode> nodeMap = new HashMap<>();
 
-    List<BluePipelineNode> nodes = new ArrayList<>();
+    List<BluePipelineNode> nodes;
     private final Link self;
 
+    private int version;
+    private boolean truncated;
+
+    /** Nodes changed since the version given by the request, null if all nodes are listed */
+    private List<BluePipelineNode> changedNodes;
+
+    /**
+     * Nodes are computed when they are first listed. A single node is resolved on its own, see {@link #get(String)}.
+     */
     public PipelineNodeContainerImpl(WorkflowRun run, Link parentLink) {
         this.run = run;
         this.self = parentLink.rel("nodes");
+    }
 
+    private synchronized List<BluePipelineNode> getNodes() {
+        if(nodes != null){
+            return nodes;
+        }
+        nodes = new ArrayList<>();
         WorkflowJob job = run.getParent();
 
-        PipelineNodeGraphBuilder graphBuilder = new PipelineNodeGraphBuilder(run);
-
         //If build either failed or is in progress then return union with last successful pipeline run
-        if(run.getResult() != Result.SUCCESS
+        boolean union = run.getResult() != Result.SUCCESS
             && job.getLastSuccessfulBuild() != null
-            && Integer.valueOf(job.getLastSuccessfulBuild().getId()) < Integer.valueOf(run.getId())){
-            PipelineNodeGraphBuilder pastBuild = new PipelineNodeGraphBuilder(job.getLastSuccessfulBuild());
-            this.nodes = graphBuilder.union(pastBuild,getLink());
+            && Integer.valueOf(job.getLastSuccessfulBuild().getId()) < Integer.valueOf(run.getId());
+
+        int since = PipelineNodeUtil.getSinceVersion();
+        long deadline = PipelineNodeGraphBuilder.newDeadline();
+        PipelineGraphSnapshot pastBuild = union ? PipelineGraphSnapshot.getShapeTemplate(job) : null;
+        PipelineGraphSnapshot snapshot = PipelineGraphSnapshot.get(run, deadline);
+        if(snapshot != null){
+            List<PipelineGraphSnapshot.Node> snapshotNodes = snapshot.getNodes();
+            if(pastBuild != null) {
+                snapshotNodes = snapshot.union(pastBuild);
+            }
+            for(PipelineGraphSnapshot.Node n: snapshotNodes){
+                nodes.add(new PipelineSnapshotNodeImpl(run, n.isInactive() ? pastBuild : snapshot, n, getLink()));
+            }
+            // completed run doesn't change anymore
+            this.version = snapshot.getVersion();
+            this.truncated = snapshot.isTruncated();
+            if(since >= version){
+                this.changedNodes = new ArrayList<>();
+            }
         }else{
-            this.nodes = graphBuilder.getPipelineNodes(getLink());
+            // nodes of a running pipeline may be cached, version is the one they were computed at
+            LivePipelineGraph.PipelineNodes pipelineNodes = LivePipelineGraph.getPipelineNodes(run, getLink(), pastBuild, deadline);
+            this.version = pipelineNodes.getVersion();
+            this.truncated = pipelineNodes.isTruncated();
+            this.nodes = pipelineNodes.getNodes(run);
+            if(since >= 0){
+                this.changedNodes = getChangedNodes(pipelineNodes.getGraphBuilder(), since);
+            }
         }
         for(BluePipelineNode node: nodes){
             nodeMap.put(node.getId(), node);
         }
+        return nodes;
+    }
+
+    /**
+     * Future nodes projected from the last successful run follow the last node of this run, so they are all listed
+     * as soon as there is any new node.
+     */
+    private List<BluePipelineNode> getChangedNodes(PipelineNodeGraphBuilder graphBuilder, int since){
+        List<BluePipelineNode> changed = new ArrayList<>();
+        List<BluePipelineNode> futureNodes = new ArrayList<>();
+        boolean newNodes = false;
+        for(BluePipelineNode node: nodes){
+            if(node instanceof PipelineSnapshotNodeImpl && ((PipelineSnapshotNodeImpl) node).getNode().isInactive()){
+                futureNodes.add(node);
+            }else if(graphBuilder.isChangedSince(node.getId(), since)){
+                changed.add(node);
+                newNodes |= FlowGraphIndex.parseId(node.getId()) > since;
+            }
+        }
+        if(newNodes){
+            changed.addAll(futureNodes);
+        }
+        return changed;
     }
 
+    /**
+     * Resolves the node of this run with the given id directly, from the snapshot of a completed run or by computing
+     * only that node from the graph of a running one. Only future nodes projected from the last successful run need
+     * all nodes to be computed.
+     */
     @Override
     public BluePipelineNode get(String name) {
+        BluePipelineNode node = getNode(name);
+        if(node != null){
+            return node;
+        }
+        getNodes();
         if(nodeMap.get(name) != null){
             return nodeMap.get(name);
         }
@@ -55,9 +132,24 @@ public class PipelineNodeContainerImpl extends BluePipelineNodeContainer {
             name, run.getParent().getName()));
     }
 
+    private @CheckForNull BluePipelineNode getNode(String id) {
+        long deadline = PipelineNodeGraphBuilder.newDeadline();
+        PipelineGraphSnapshot snapshot = PipelineGraphSnapshot.get(run, deadline);
+        if(snapshot != null){
+            PipelineGraphSnapshot.Node n = snapshot.getNode(id);
+            return n == null ? null : new PipelineSnapshotNodeImpl(run, snapshot, n, getLink());
+        }
+        return LivePipelineGraph.getPipelineNode(run, id, getLink(), deadline);
+    }
+
     @Override
     public Iterator<BluePipelineNode> iterator() {
-        return nodes.iterator();
+        List<BluePipelineNode> nodes = getNodes();
+        PipelineNodeUtil.setGraphVersion(version);
+        if(truncated){
+            PipelineNodeUtil.setGraphTruncated();
+        }
+        return changedNodes == null ? nodes.iterator() : changedNodes.iterator();
     }
 
     @Override
@@ -1,32 +1,33 @@
 package io.jenkins.blueocean.rest.impl.pipeline;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 import io.jenkins.blueocean.rest.hal.Link;
 import io.jenkins.blueocean.rest.model.BluePipelineNode;
 import io.jenkins.blueocean.rest.model.BlueRun;
-import org.jenkinsci.plugins.workflow.actions.LabelAction;
 import org.jenkinsci.plugins.workflow.actions.NotExecutedNodeAction;
-import org.jenkinsci.plugins.workflow.actions.StageAction;
 import org.jenkinsci.plugins.workflow.actions.TimingAction;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepEndNode;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
 import org.jenkinsci.plugins.workflow.graph.FlowGraphWalker;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.jenkinsci.plugins.workflow.support.visualization.table.FlowGraphTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 
-import static io.jenkins.blueocean.rest.impl.pipeline.PipelineNodeUtil.isParallelBranch;
-import static io.jenkins.blueocean.rest.impl.pipeline.PipelineNodeUtil.isStage;
 
 /**
  * Filters {@link FlowGraphTable} to BlueOcean specific model representing DAG like graph objects
@@ -34,115 +35,501 @@ import static io.jenkins.blueocean.rest.impl.pipeline.PipelineNodeUtil.isStage;
  * @author Vivek Pandey
  */
 public class PipelineNodeGraphBuilder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineNodeGraphBuilder.class);
 
-    private final List<FlowNode> sortedNodes;
+    /**
+     * Time budget of graph builds done while serving a request, in milliseconds, 0 for no limit. Builds that run out
+     * of it stop with the nodes added so far, see {@link #isTruncated()}. Not final, tests lower it.
+     */
+    static long TIME_BUDGET_MILLIS = Long.getLong(PipelineNodeGraphBuilder.class.getName() + ".timeBudgetMillis", 10000);
+
+    private final FlowGraphIndex index;
 
     private final WorkflowRun run;
+    private final FlowExecution execution;
     private final Map<FlowNode, List<FlowNode>> parentToChildrenMap = new LinkedHashMap<>();
-    private final Map<FlowNode, PipelineNodeGraphBuilder.NodeRunStatus> nodeStatusMap = new LinkedHashMap<>();
+
+    /**
+     * Legacy stages that were completed by a following legacy stage, mapped to the node that preceded the following
+     * stage. Status of such stage is the status of that node.
+     */
+    private final Map<FlowNode, FlowNode> completedStages = new HashMap<>();
+
+    private FlowNode previousStage;
+    private FlowNode previousBranch;
+
+    /**
+     * Time in milliseconds nodes stop being added at, 0 for no deadline. Steps of a builder that doesn't retain all
+     * nodes are streamed within it as well.
+     */
+    private final long deadline;
+
+    /** Records of the steps, collected while nodes are added, null if this builder doesn't collect them */
+    private final StepRecorder.Records stepRecords;
+
+    /** True if this graph doesn't have all the nodes created so far */
+    private volatile boolean truncated;
 
 
     public PipelineNodeGraphBuilder(WorkflowRun run) {
+        this(run, run.getExecution(), run.getExecution() == null
+            ? Collections.<FlowNode>emptyList()
+            : streamNodes(run.getExecution()));
+    }
+
+    /**
+     * @param run run the execution belongs to, null for executions that are not backed by a run such as the synthetic
+     *            ones used by benchmarks
+     * @param sortedNodes flow nodes sorted by id, more nodes can be added later using {@link #add(FlowNode)}
+     */
+    PipelineNodeGraphBuilder(@Nullable WorkflowRun run, @Nullable FlowExecution execution, Iterable<FlowNode> sortedNodes) {
+        this(run, execution, sortedNodes, new FlowGraphIndex(), 0, null);
+    }
+
+    /**
+     * @param deadline time in milliseconds nodes stop being added at, 0 for no deadline
+     * @param stepRecords collects records of the steps as nodes are added, null not to collect them
+     */
+    private PipelineNodeGraphBuilder(@Nullable WorkflowRun run, @Nullable FlowExecution execution,
+                                     Iterable<FlowNode> sortedNodes, FlowGraphIndex index, long deadline,
+                                     @Nullable StepRecorder.Records stepRecords) {
         this.run = run;
+        this.execution = execution;
+        this.index = index;
+        this.deadline = deadline;
+        this.stepRecords = stepRecords;
+        int count = 0;
+        for(FlowNode node: sortedNodes){
+            if(isPastDeadline(deadline, count++)){
+                LOGGER.info(String.format("Pipeline graph of %s ran out of time budget after %s nodes", run, count - 1));
+                truncated = true;
+                break;
+            }
+            add(node);
+        }
+        if(stepRecords != null){
+            stepRecords.finish(getEndTime());
+        }
+    }
+
+    /**
+     * Clock is read every few nodes, adding a node costs less than reading it
+     *
+     * @param count number of nodes added so far
+     */
+    private static boolean isPastDeadline(long deadline, int count){
+        return deadline > 0 && (count & 0xFF) == 0 && System.currentTimeMillis() > deadline;
+    }
+
+    /**
+     * Builds graph of the given run, stopping at the given deadline. Nodes are loaded in id order, so the graph is
+     * that of the run as it was at some point, up to the last node added.
+     *
+     * @param deadline time in milliseconds nodes stop being added at, 0 for no deadline
+     * @see #newDeadline()
+     * @see #isTruncated()
+     */
+    static PipelineNodeGraphBuilder withDeadline(WorkflowRun run, long deadline) {
+        FlowExecution execution = run.getExecution();
+        if(execution == null){
+            return new PipelineNodeGraphBuilder(run);
+        }
+        return new PipelineNodeGraphBuilder(run, execution, streamNodes(execution), new FlowGraphIndex(), deadline, null);
+    }
+
+    /**
+     * @return deadline of a graph build starting now, 0 if builds have no time budget
+     * @see #TIME_BUDGET_MILLIS
+     */
+    static long newDeadline() {
+        return TIME_BUDGET_MILLIS > 0 ? System.currentTimeMillis() + TIME_BUDGET_MILLIS : 0;
+    }
+
+    /**
+     * @return true if the graph build ran out of its time budget, or the graph is not done adding the nodes created
+     * so far, so that nodes and steps of this graph are incomplete
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    /**
+     * Builds graph of the given run visiting its nodes once, in id order, keeping only stages, parallel branches and
+     * nodes needed to compute their status and duration. Nodes of big pipelines are not all held in memory at once,
+     * as they are when the flow graph is walked.
+     *
+     * Steps are not indexed by such builder, steps asked for are found by streaming the nodes again and only the
+     * requested ones are kept, see {@link StepRecorder.Page}.
+     *
+     * @see FlowGraphIndex#stagesOnly()
+     */
+    public static PipelineNodeGraphBuilder stagesOnly(WorkflowRun run) {
+        return stagesOnly(run, 0);
+    }
+
+    /**
+     * Same as {@link #stagesOnly(WorkflowRun)}, stopping at the given deadline
+     *
+     * @see #withDeadline(WorkflowRun, long)
+     */
+    static PipelineNodeGraphBuilder stagesOnly(WorkflowRun run, long deadline) {
+        FlowExecution execution = run.getExecution();
+        if(execution == null){
+            return new PipelineNodeGraphBuilder(run);
+        }
+        return new PipelineNodeGraphBuilder(run, execution, streamNodes(execution), FlowGraphIndex.stagesOnly(), deadline, null);
+    }
+
+    static PipelineNodeGraphBuilder stagesOnly(@Nullable WorkflowRun run, FlowExecution execution) {
+        return new PipelineNodeGraphBuilder(run, execution, streamNodes(execution), FlowGraphIndex.stagesOnly(), 0, null);
+    }
+
+    /**
+     * Same as {@link #stagesOnly(WorkflowRun, long)}, records of the steps are collected in the same pass over the
+     * nodes, see {@link #getStepRecords()}. Snapshot of a completed run is computed from such builder.
+     *
+     * @see PipelineGraphSnapshot#create(PipelineNodeGraphBuilder)
+     */
+    static PipelineNodeGraphBuilder withStepRecords(WorkflowRun run, long deadline) {
+        FlowExecution execution = run.getExecution();
+        if(execution == null){
+            return new PipelineNodeGraphBuilder(run);
+        }
+        return new PipelineNodeGraphBuilder(run, execution, streamNodes(execution), FlowGraphIndex.stagesOnly(), deadline,
+            new StepRecorder.Records());
+    }
+
+    /**
+     * Builder like {@link #withStepRecords(WorkflowRun, long)} with no nodes yet. Nodes are added by the caller with
+     * {@link #add(FlowNode)}, in id order, then {@link #finishStepRecords()} is called. Until then the graph is marked
+     * as truncated, its nodes and step records can be read as added so far.
+     */
+    static PipelineNodeGraphBuilder recordingSteps(WorkflowRun run, FlowExecution execution) {
+        PipelineNodeGraphBuilder builder = new PipelineNodeGraphBuilder(run, execution,
+            Collections.<FlowNode>emptyList(), FlowGraphIndex.stagesOnly(), 0, new StepRecorder.Records());
+        builder.setTruncated(true);
+        return builder;
+    }
+
+    /**
+     * Completes records of the steps once all nodes are added to a builder created by
+     * {@link #recordingSteps(WorkflowRun, FlowExecution)}
+     */
+    synchronized void finishStepRecords() {
+        if(stepRecords != null){
+            stepRecords.finish(getEndTime());
+        }
+        truncated = false;
+    }
+
+    /**
+     * Node ids are sequence numbers, so nodes are visited in id order by loading them one by one, up to the highest
+     * id of current heads. Nodes are loaded from the execution storage on demand, a few of them ahead in parallel,
+     * and can be garbage collected as soon as they are visited. Falls back to {@link #sortNodes(FlowExecution)} if
+     * ids are not numeric.
+     *
+     * @return all nodes of the given execution in id order
+     * @see FlowNodePrefetcher
+     */
+    public static Iterable<FlowNode> streamNodes(final FlowExecution execution){
+        return streamNodes(execution, 1);
+    }
+
+    /**
+     * Same as {@link #streamNodes(FlowExecution)}, starting at the node with the given id. All nodes are given if ids
+     * are not numeric.
+     */
+    static Iterable<FlowNode> streamNodes(final FlowExecution execution, int firstId){
+        int highestId = -1;
+        for(FlowNode head: execution.getCurrentHeads()){
+            int id = FlowGraphIndex.parseId(head.getId());
+            if(id < 0){
+                return sortNodes(execution);
+            }
+            highestId = Math.max(highestId, id);
+        }
+        return new FlowNodePrefetcher(execution, Math.max(1, firstId), highestId);
+    }
 
-        TreeSet<FlowNode> nodeTreeSet = new TreeSet<>(new Comparator<FlowNode>() {
-            @Override
-            public int compare(FlowNode node1, FlowNode node2) {
-                return Integer.compare(parseIota(node1), parseIota(node2));
+    /**
+     * Node ids are dense sequence numbers, so nodes are sorted by placing each of them at its id, nodes with
+     * non-numeric id (none in CPS) come first.
+     *
+     * @return all nodes of the given execution sorted by id
+     */
+    public static List<FlowNode> sortNodes(FlowExecution execution){
+        List<FlowNode> sortedNodes = new ArrayList<>();
+        FlowNode[] nodesById = new FlowNode[64];
+        for(FlowNode node: new FlowGraphWalker(execution)){
+            int id = FlowGraphIndex.parseId(node.getId());
+            if(id < 0){
+                sortedNodes.add(node);
+                continue;
+            }
+            if(id >= nodesById.length){
+                nodesById = Arrays.copyOf(nodesById, Math.max(id + 1, nodesById.length * 2));
+            }
+            nodesById[id] = node;
+        }
+        for(FlowNode node: nodesById){
+            if(node != null){
+                sortedNodes.add(node);
             }
+        }
+        return sortedNodes;
+    }
+
+    /**
+     * Adds the next node of the pipeline to this graph. Nodes must be added in id order, nodes that were already added
+     * are ignored.
+     *
+     * Only the shape of the graph is computed here, statuses are computed when nodes are read as they keep changing
+     * while the pipeline runs.
+     */
+    synchronized void add(FlowNode node){
+        if(index.contains(node)){
+            return;
+        }
+        FlowNode precedingNode = index.getLastNode();
+        index.add(node);
+        if(stepRecords != null){
+            stepRecords.add(index, node);
+        }
 
-            private int parseIota(FlowNode node) {
-                try {
-                    return Integer.parseInt(node.getId());
-                } catch (NumberFormatException e) {
-                    return 0;
+        boolean stage = index.isStage(node);
+        boolean parallelBranch = !stage && index.isParallelBranch(node);
+        if(!stage && !parallelBranch){
+            return;
+        }
+        boolean nestedInParallel = index.isNestedInParallel(node);
+        if (stage && !nestedInParallel) { //Stage but not nested
+            addChild(parentToChildrenMap, node, null);
+            if (previousBranch != null) {
+                /**
+                 * We encountered stage after previous branch, we need to
+                 *  - get all branches from previous stage
+                 *  - add this stage node as child to all branches
+                 */
+                List<FlowNode> branches = parentToChildrenMap.get(previousStage);
+                for (FlowNode n : branches) {
+                    addChild(parentToChildrenMap, n, node);
                 }
+                previousBranch = null;
+            } else if (previousStage != null) {
+                addChild(parentToChildrenMap, previousStage, node);
             }
-        });
 
-        if(run.getExecution() != null) {
-            Iterables.addAll(nodeTreeSet, new FlowGraphWalker(run.getExecution()));
+            if(!isBlockStage(node) && previousStage != null && precedingNode != null){
+                completedStages.put(previousStage, precedingNode);
+            }
+            previousStage = node;
+        } else if (parallelBranch && !nestedInParallel) { //branch but not nested ones
+            addChild(parentToChildrenMap, node, null);
+            if(previousStage != null) {
+                addChild(parentToChildrenMap, previousStage, node);
+            }
+            previousBranch = node;
         }
-        this.sortedNodes = Collections.unmodifiableList(new ArrayList<>(nodeTreeSet));
-//        dumpNodes(sortedNodes);
-        build();
+    }
 
+    /**
+     * Status of the given node that comes from the node itself, its end node or the node that completed it. Null for
+     * stages with parallel branches, their status comes from their branches.
+     */
+    private NodeRunStatus getOwnStatus(FlowNode node){
+        if(isParallelBranch(node)){
+            FlowNode endNode = index.getEndNode(node);
+            if (endNode != null) {
+                return new PipelineNodeGraphBuilder.NodeRunStatus(endNode);
+            }
+            //It's still running, report it as state: running and result: unknown
+            return new PipelineNodeGraphBuilder.NodeRunStatus(BlueRun.BlueRunResult.UNKNOWN, BlueRun.BlueRunState.RUNNING);
+        }else if(completedStages.containsKey(node)){
+            return new PipelineNodeGraphBuilder.NodeRunStatus(completedStages.get(node));
+        }else if(isBlockStage(node)){
+            FlowNode endNode = index.getEndNode(node);
+            if(endNode == null && node instanceof StepAtomNode){
+                endNode = node;
+            }
+            if(endNode != null){
+                return new PipelineNodeGraphBuilder.NodeRunStatus(endNode);
+            }
+        }
+        return null;
     }
 
-    private void build(){
-        FlowNode previousStage = null;
-        FlowNode previousBranch = null;
-        int count = 0;
-        for (FlowNode node : sortedNodes) {
-            if(!isStage(node) && !isParallelBranch(node)){
-                continue;
+    /*
+     * Node classification is looked up in the index rather than in node actions, see FlowGraphIndex#classify
+     */
+
+    synchronized boolean isStage(FlowNode node){
+        return index.isStage(node);
+    }
+
+    synchronized boolean isParallelBranch(FlowNode node){
+        return index.isParallelBranch(node);
+    }
+
+    private boolean isBlockStage(FlowNode node){
+        return index.isBlockStage(node);
+    }
+
+    /**
+     * @return display name of the given stage or parallel branch
+     */
+    public synchronized String getDisplayName(FlowNode node){
+        return index.getDisplayName(node);
+    }
+
+    /**
+     * Version of this graph is the highest id of flow nodes added so far. Pipeline nodes and steps change only as new
+     * flow nodes are added, apart from running ones whose duration keeps growing.
+     *
+     * @return version of this graph, 0 if it's empty
+     * @see #isChangedSince(String, int)
+     * @see #isStepChangedSince(FlowNode, int)
+     */
+    public synchronized int getVersion(){
+        return Math.max(0, index.getHighestId());
+    }
+
+    /**
+     * @return stage or parallel branch the newest node of this graph is in, null if there is none
+     * @see FlowGraphIndex#getCurrentStage()
+     */
+    public synchronized @CheckForNull FlowNode getCurrentStage(){
+        return index.getCurrentStage();
+    }
+
+    /**
+     * Pipeline node is changed since the given version if it's new, if it's still running or if any of the nodes its
+     * status, duration and edges come from is new: its end node, the node that completed it, its children and the end
+     * nodes of its parallel branches. Last stage always counts as changed, its status is the status of the run.
+     *
+     * @param id id of a stage or parallel branch node
+     * @param version graph version given by {@link #getVersion()}
+     */
+    public synchronized boolean isChangedSince(String id, int version){
+        FlowNode node = index.getNode(id);
+        if(node == null || isNewerThan(node, version) || node.equals(getLastStageNode())){
+            return true;
+        }
+        if(isParallelBranch(node) || isBlockStage(node)){
+            FlowNode endNode = index.getEndNode(node);
+            if(endNode == null || isNewerThan(endNode, version)){
+                return true;
             }
-            boolean nestedInParallel = PipelineNodeUtil.isNestedInParallel(sortedNodes, node);
-            if (isStage(node) && !nestedInParallel) { //Stage but not nested
-                addChild(node, null);
-                if (previousBranch != null) {
-                    /**
-                     * We encountered stage after previous branch, we need to
-                     *  - get all branches from previous stage
-                     *  - add this stage node as child to all branches
-                     */
-                    List<FlowNode> branches = parentToChildrenMap.get(previousStage);
-                    for (FlowNode n : branches) {
-                        addChild(n, node);
-                    }
-                    previousBranch = null;
-                } else if (previousStage != null) {
-                    addChild(previousStage, node);
-                } else { //previousStage is null
-                    addChild(node, null);
+        }
+        if(isNewerThan(completedStages.get(node), version)){
+            return true;
+        }
+        List<FlowNode> children = parentToChildrenMap.get(node);
+        if(children != null){
+            for(FlowNode c: children){
+                if(isNewerThan(c, version)){
+                    return true;
                 }
-
-                if(node.getAction(LabelAction.class) != null && node.getAction(StageAction.class) == null){
-                    FlowNode endNode = PipelineNodeUtil.getStepEndNode(sortedNodes, node);
-                    if(endNode == null){
-                        endNode = PipelineNodeUtil.getEndNode(sortedNodes,node);
-                    }
-                    if(endNode != null){
-                        nodeStatusMap.put(node, new PipelineNodeGraphBuilder.NodeRunStatus(endNode));
+                if(isParallelBranch(c)){
+                    FlowNode endNode = index.getEndNode(c);
+                    if(endNode == null || isNewerThan(endNode, version)){
+                        return true;
                     }
-                }else if(previousStage!=null){
-                    nodeStatusMap.put(previousStage, new PipelineNodeGraphBuilder.NodeRunStatus(sortedNodes.get(count - 1)));
-                }
-                previousStage = node;
-            } else if (isParallelBranch(node) && !nestedInParallel) { //branch but not nested ones
-                addChild(node, null);
-                if(previousStage != null) {
-                    addChild(previousStage, node);
                 }
-                FlowNode endNode = PipelineNodeUtil.getStepEndNode(sortedNodes,node);
-                if (endNode != null) {
-                    nodeStatusMap.put(node, new PipelineNodeGraphBuilder.NodeRunStatus(endNode));
-                }else{
-                    //It's still running, report it as state: running and result: unknown
-                    nodeStatusMap.put(node, new PipelineNodeGraphBuilder.NodeRunStatus(BlueRun.BlueRunResult.UNKNOWN, BlueRun.BlueRunState.RUNNING));
-                }
-                previousBranch = node;
             }
-            count++;
         }
-        int size = parentToChildrenMap.keySet().size();
-        if (size > 0) {
-            PipelineNodeGraphBuilder.NodeRunStatus runStatus = PipelineNodeUtil.getStatus(run);
-            FlowNode lastNode = getLastStageNode();
-            nodeStatusMap.put(lastNode, runStatus);
+        return false;
+    }
+
+    /**
+     * Step is changed since the given version if it's new, still running or if the node following it, which its
+     * duration is computed from, is new.
+     *
+     * @param version graph version given by {@link #getVersion()}
+     */
+    public synchronized boolean isStepChangedSince(FlowNode step, int version){
+        if(!index.retainsAllNodes()){
+            // node following a step is the one with the next id
+            int id = FlowGraphIndex.parseId(step.getId());
+            return id < 0 || id >= index.getHighestId() || step.isRunning() || id + 1 > version;
         }
+        int i = index.getPosition(step);
+        if(i < 0 || i + 1 >= index.size() || step.isRunning()){
+            return true;
+        }
+        return isNewerThan(step, version) || isNewerThan(index.getNode(i + 1), version);
     }
 
-    public FlowNode getNodeById(String id){
-        for(FlowNode node: sortedNodes){
-            if(node.getId().equals(id)){
-                return node;
+    private static boolean isNewerThan(@Nullable FlowNode node, int version){
+        return node != null && FlowGraphIndex.parseId(node.getId()) > version;
+    }
+
+    /**
+     * Nodes not retained by this builder are loaded from the execution
+     */
+    public synchronized FlowNode getNodeById(String id){
+        FlowNode node = index.getNode(id);
+        if(node == null && !index.retainsAllNodes() && execution != null && FlowGraphIndex.parseId(id) >= 0){
+            try {
+                return execution.getNode(id);
+            } catch (IOException e) {
+                LOGGER.debug(String.format("No flow node with id %s in %s", id, execution), e);
             }
         }
-        return null;
+        return node;
+    }
+
+    /**
+     * Steps of a builder that doesn't retain all nodes are found by streaming the nodes of the execution again, from
+     * the given node on, within the deadline of this builder. Only the requested page of steps is kept.
+     *
+     * @param node stage or parallel branch node, null for all steps of the run
+     * @see StepRecorder.Page
+     */
+    private List<FlowNode> streamSteps(@CheckForNull FlowNode node, int since, int start, int limit){
+        if(execution == null){
+            return Collections.emptyList();
+        }
+        FlowGraphIndex stepIndex = FlowGraphIndex.stagesOnly();
+        StepRecorder.Page page = new StepRecorder.Page(node, since, start, limit);
+        int count = 0;
+        for(FlowNode n: streamNodes(execution, node == null ? 1 : FlowGraphIndex.parseId(node.getId()))){
+            if(isPastDeadline(deadline, count++)){
+                LOGGER.info(String.format("Steps of %s ran out of time budget after %s nodes", run, count - 1));
+                truncated = true;
+                return page.getSteps();
+            }
+            stepIndex.add(n);
+            page.add(stepIndex, n);
+            if(page.isDone()){
+                return page.getSteps();
+            }
+        }
+        page.finish(getEndTime());
+        return page.getSteps();
+    }
+
+    /**
+     * @return records of all steps of the run, null if this builder doesn't collect them
+     * @see #withStepRecords(WorkflowRun, long)
+     */
+    synchronized @CheckForNull List<PipelineGraphSnapshot.Step> getStepRecords(){
+        // copied, more steps may be recorded while they are read
+        return stepRecords == null ? null : new ArrayList<>(stepRecords.getSteps());
     }
 
-    public List<FlowNode> getSteps(FlowNode node){
+    /**
+     * @return ids of the steps of the given stage or parallel branch, null if this builder doesn't collect step
+     * records
+     */
+    synchronized @CheckForNull List<String> getStepIds(FlowNode node){
+        return stepRecords == null ? null : new ArrayList<>(stepRecords.getStepIds(node));
+    }
+
+    public synchronized List<FlowNode> getSteps(FlowNode node){
         if(isStage(node)){
             return getStageSteps(node);
         }else if(isParallelBranch(node)){
@@ -151,78 +538,131 @@ public class PipelineNodeGraphBuilder {
         return Collections.emptyList();
     }
 
-    public List<FlowNode> getStageSteps(FlowNode p){
+    /**
+     * A page of the steps of the given stage or parallel branch, or of the whole run if no node is given. Steps are
+     * matched by their positions in the index and only the ones in the page are collected, the scan stops as soon as
+     * the page is full.
+     *
+     * @param node stage or parallel branch node, null for all steps of the run
+     * @param since graph version given by {@link #getVersion()}, only steps changed since are listed, negative for
+     *              all steps
+     * @param start number of matching steps to skip
+     * @param limit maximum number of steps returned
+     */
+    public synchronized List<FlowNode> getSteps(@CheckForNull FlowNode node, int since, int start, int limit){
+        if(!index.retainsAllNodes()){
+            if(node != null && !index.isStage(node) && !index.isParallelBranch(node)){
+                return Collections.emptyList();
+            }
+            return streamSteps(node, since, start, limit);
+        }
         List<FlowNode> steps = new ArrayList<>();
-        int i = sortedNodes.indexOf(p);
-        if(i>=0 && isStage(p)){
-            FlowNode end = PipelineNodeUtil.getStepEndNode(sortedNodes,p);
+        int i = -1;
+        boolean stage = false;
+        FlowNode end = null;
+        if(node != null){
+            i = index.getPosition(node);
+            if(i < 0){
+                return steps;
+            }
+            stage = index.isStage(i);
+            if(!stage){
+                if(!index.isParallelBranch(i)){
+                    return steps;
+                }
+                end = index.getEndNode(node);
+            }
+        }
+        int skipped = 0;
+        for(int j = i + 1; j < index.size() && steps.size() < limit; j++){
+            boolean step;
+            if(node == null){
+                step = index.isAtom(j) && !index.isStage(j);
+            }else if(stage){
+                // same bounds as getStageSteps(FlowNode)
+                if(index.isStage(j) && !index.isInBlock(i, j)){
+                    break;
+                }
+                step = index.isAtom(j);
+            }else{
+                // same bounds as getParallelBranchSteps(FlowNode)
+                if(index.getNode(j).equals(end)){
+                    break;
+                }
+                step = !index.isParallelBranch(j) && index.isAtom(j) && index.isInBlock(i, j);
+            }
+            if(!step || (since >= 0 && !isStepChangedSince(index.getNode(j), since))){
+                continue;
+            }
+            if(skipped < start){
+                skipped++;
+            }else{
+                steps.add(index.getNode(j));
+            }
+        }
+        return steps;
+    }
+
+    public synchronized List<FlowNode> getStageSteps(FlowNode p){
+        if(!index.retainsAllNodes()){
+            return index.isStage(p) ? streamSteps(p, -1, 0, Integer.MAX_VALUE) : Collections.<FlowNode>emptyList();
+        }
+        List<FlowNode> steps = new ArrayList<>();
+        int i = index.getPosition(p);
+        if(i>=0 && index.isStage(i)){
             //collect steps till next stage is found otherwise till end of pipeline
-            for(int j=i+1; j < sortedNodes.size(); j++){
-                FlowNode c = sortedNodes.get(j);
+            for(int j=i+1; j < index.size(); j++){
                 //if the stage is not nested ignore them, because we want to include steps from nested stages
-                if(isStage(c) && !PipelineNodeUtil.isInBlock(p,end,c)){
+                if(index.isStage(j) && !index.isInBlock(i, j)){
                     break;
                 }
-                if(c instanceof StepAtomNode) {
-                    steps.add(c);
+                if(index.isAtom(j)) {
+                    steps.add(index.getNode(j));
                 }
             }
         }
         return steps;
     }
 
-    public List<FlowNode> getAllSteps(){
+    public synchronized List<FlowNode> getAllSteps(){
+        if(!index.retainsAllNodes()){
+            return streamSteps(null, -1, 0, Integer.MAX_VALUE);
+        }
         List<FlowNode> steps = new ArrayList<>();
-        for(FlowNode c: sortedNodes){
-            if(c instanceof StepAtomNode && !isStage(c)) {
-                steps.add(c);
+        for(int i = 0; i < index.size(); i++){
+            if(index.isAtom(i) && !index.isStage(i)) {
+                steps.add(index.getNode(i));
             }
         }
         return steps;
     }
 
-    public List<FlowNode> getParallelBranchSteps(FlowNode p){
+    public synchronized List<FlowNode> getParallelBranchSteps(FlowNode p){
+        if(!index.retainsAllNodes()){
+            return index.isParallelBranch(p) ? streamSteps(p, -1, 0, Integer.MAX_VALUE) : Collections.<FlowNode>emptyList();
+        }
         List<FlowNode> steps = new ArrayList<>();
-        int i = sortedNodes.indexOf(p);
-        FlowNode prev=p;
-        if(i>=0 && isParallelBranch(p)){
-            FlowNode end = PipelineNodeUtil.getStepEndNode(sortedNodes,p);
-            for(int j=i+1; j < sortedNodes.size(); j++){
-                FlowNode c = sortedNodes.get(j);
+        int i = index.getPosition(p);
+        if(i>=0 && index.isParallelBranch(i)){
+            FlowNode end = index.getEndNode(p);
+            for(int j=i+1; j < index.size(); j++){
+                FlowNode c = index.getNode(j);
                 if(c.equals(end)){
-                    nodeStatusMap.put(p, new PipelineNodeGraphBuilder.NodeRunStatus(end));
                     break;
                 }
-                if(isParallelBranch(c)){
-                    continue;
-                }
-                //we take only the legal children
-                if(!PipelineNodeUtil.isInBlock(p, end, c) && !isParentOf(c,prev)){
+                // only steps are collected, skip anything else before checking ancestry
+                if(index.isParallelBranch(j) || !index.isAtom(j)){
                     continue;
                 }
-                if(c instanceof StepAtomNode) {
+                //we take only the legal children, steps of other branches running meanwhile are skipped
+                if(index.isInBlock(i, j)){
                     steps.add(c);
-                    prev=c;
-
-                    FlowNode endNode = PipelineNodeUtil.getStepEndNode(sortedNodes,c);
-                    if (endNode != null) {
-                        nodeStatusMap.put(c, new PipelineNodeGraphBuilder.NodeRunStatus(endNode));
-                    }
                 }
             }
         }
         return steps;
     }
 
-    private boolean isParentOf(FlowNode node, FlowNode child){
-        for(FlowNode n:node.getParents()){
-            if(child.equals(n)){
-                return true;
-            }
-        }
-        return false;
-    }
-
 
     /**
      * Create a union of current pipeline nodes with the one from future. Term future indicates that
@@ -237,13 +677,15 @@ public class PipelineNodeGraphBuilder {
      * are not bigger than this pipeline nodes then no union is performed.
      * @see PipelineNodeContainerImpl#PipelineNodeContainerImpl(WorkflowRun, Link)
      */
-    public List<BluePipelineNode> union(PipelineNodeGraphBuilder other, Link parentLink) {
-        Map<FlowNode, List<FlowNode>> futureNodes = other.parentToChildrenMap;
-        if (parentToChildrenMap.size() < futureNodes.size()) {
+    public synchronized List<BluePipelineNode> union(PipelineNodeGraphBuilder other, Link parentLink) {
+        // this graph might be shared by concurrent requests while the pipeline runs, union goes to a copy
+        Map<FlowNode, List<FlowNode>> graph = copyGraph();
+        Map<FlowNode, List<FlowNode>> futureNodes = other.copyGraph();
+        if (graph.size() < futureNodes.size()) {
 
             // XXX: If the pipeline was modified since last successful run then
             // the union might represent invalid future nodes.
-            List<FlowNode> nodes = ImmutableList.copyOf(parentToChildrenMap.keySet());
+            List<FlowNode> nodes = ImmutableList.copyOf(graph.keySet());
             List<FlowNode> thatNodes = ImmutableList.copyOf(futureNodes.keySet());
             int currentNodeSize = nodes.size();
             for (int i = nodes.size(); i < futureNodes.size(); i++) {
@@ -253,7 +695,7 @@ public class PipelineNodeGraphBuilder {
                 if (currentNodeSize> 0 && i == currentNodeSize) {
                     FlowNode latestNode = nodes.get(currentNodeSize - 1);
                     if (isStage(latestNode)) {
-                        addChild(latestNode, n);
+                        addChild(graph, latestNode, n);
                     } else if (isParallelBranch(latestNode)) {
                         /**
                          * If its a parallel node, find all its siblings and add the next node as
@@ -262,51 +704,231 @@ public class PipelineNodeGraphBuilder {
                         //parallel node has at most one paraent
                         FlowNode parent = getParentStageOfBranch(latestNode);
                         if (parent != null) {
-                            List<FlowNode> children = parentToChildrenMap.get(parent);
+                            List<FlowNode> children = graph.get(parent);
                             for (FlowNode c : children) {
                                 // Add next node to the parallel node's edge
                                 if (isParallelBranch(c)) {
-                                    addChild(c, n);
+                                    addChild(graph, c, n);
                                 }
                             }
                         }
                     }
                 }
-                parentToChildrenMap.put(n, futureNodes.get(n.inactiveNode));
+                graph.put(n, futureNodes.get(n.inactiveNode));
             }
         }
-        return getPipelineNodes(parentLink);
+        return getPipelineNodes(graph, parentLink);
     }
 
-    public List<BluePipelineNode> getPipelineNodes(Link parentLink) {
-        List<BluePipelineNode> nodes = new ArrayList<>();
-        for (FlowNode n : parentToChildrenMap.keySet()) {
-            PipelineNodeGraphBuilder.NodeRunStatus status = nodeStatusMap.get(n);
+    /**
+     * Same as {@link #union(PipelineNodeGraphBuilder, Link)} but future nodes come from the shape template of the
+     * job, so the flow graph of the last successful run doesn't need to be walked again.
+     *
+     * @param template shape template of the job
+     * @see PipelineGraphSnapshot#getShapeTemplate(WorkflowJob)
+     */
+    public synchronized List<BluePipelineNode> union(PipelineGraphSnapshot template, Link parentLink) {
+        List<BluePipelineNode> nodes = getPipelineNodes(parentLink);
+        List<PipelineGraphSnapshot.Node> futureNodes = template.getNodes();
+        int currentNodeSize = nodes.size();
+        if (currentNodeSize >= futureNodes.size()) {
+            return nodes;
+        }
+
+        // XXX: If the pipeline was modified since last successful run then
+        // the union might represent invalid future nodes.
+        String firstFutureNodeId = futureNodes.get(currentNodeSize).getId();
+        List<FlowNode> currentNodes = ImmutableList.copyOf(parentToChildrenMap.keySet());
+        if (currentNodeSize > 0) {
+            FlowNode latestNode = currentNodes.get(currentNodeSize - 1);
+            if (isStage(latestNode)) {
+                ((PipelineNodeImpl) nodes.get(currentNodeSize - 1)).addEdge(firstFutureNodeId);
+            } else if (isParallelBranch(latestNode)) {
+                // all siblings of the last branch lead to the next node
+                FlowNode parent = getParentStageOfBranch(latestNode);
+                if (parent != null) {
+                    for (FlowNode c : parentToChildrenMap.get(parent)) {
+                        if (isParallelBranch(c)) {
+                            ((PipelineNodeImpl) nodes.get(currentNodes.indexOf(c))).addEdge(firstFutureNodeId);
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = currentNodeSize; i < futureNodes.size(); i++) {
+            nodes.add(new PipelineSnapshotNodeImpl(run, template, futureNodes.get(i), parentLink));
+        }
+        return nodes;
+    }
+
+    public synchronized List<BluePipelineNode> getPipelineNodes(Link parentLink) {
+        return getPipelineNodes(parentToChildrenMap, parentLink);
+    }
+
+    /**
+     * Computes the pipeline node of a single stage or parallel branch, as {@link #getPipelineNodes(Link)} lists it,
+     * without computing any other node. Its status comes from the node itself, its end node or its parallel branches,
+     * and the next stage its duration lasts till is found among its edges, so only the node and its children are
+     * looked at. Future nodes are not projected, edges are those within this run.
+     *
+     * @return pipeline node with the given id, null if there is no such stage or parallel branch in this graph
+     */
+    public synchronized @CheckForNull BluePipelineNode getPipelineNode(String id, Link parentLink) {
+        FlowNode node = index.getNode(id);
+        List<FlowNode> children = node == null ? null : parentToChildrenMap.get(node);
+        if (children == null) {
+            return null;
+        }
+        // status of the last stage is the status of the run
+        NodeRunStatus status = node.equals(previousStage) ? PipelineNodeUtil.getStatus(execution) : getOwnStatus(node);
+        if (!isExecuted(node)) {
+            status = new PipelineNodeGraphBuilder.NodeRunStatus(BlueRun.BlueRunResult.UNKNOWN, BlueRun.BlueRunState.QUEUED);
+        } else if (status == null) {
+            Map<FlowNode, Integer> positions = new HashMap<>();
+            NodeRunStatus[] statuses = new NodeRunStatus[children.size()];
+            for (int i = 0; i < children.size(); i++) {
+                FlowNode c = children.get(i);
+                positions.put(c, i);
+                statuses[i] = isParallelBranch(c) ? getOwnStatus(c) : null;
+            }
+            status = getEffectiveBranchStatus(children, statuses, positions);
+        }
+
+        long startTime = index.getStartTime(node);
+        Long durationInMillis = null;
+        if (status.getState() == BlueRun.BlueRunState.FINISHED && startTime != 0) {
+            FlowNode completedBy = isParallelBranch(node) ? index.getEndNode(node) : getNextStage(children);
+            durationInMillis = (completedBy == null ? getEndTime() : index.getStartTime(completedBy)) - startTime;
+        } else if (status.getState() == BlueRun.BlueRunState.RUNNING) {
+            durationInMillis = System.currentTimeMillis() - startTime;
+        }
+        return new PipelineNodeImpl(run, node, status, durationInMillis, new ArrayList<>(children), this, parentLink);
+    }
+
+    /**
+     * @param children children of a stage
+     * @return stage following the stage with the given children, either its child or the child of its parallel
+     * branches, all of which lead to the same stage
+     */
+    private @CheckForNull FlowNode getNextStage(List<FlowNode> children) {
+        for (FlowNode c : children) {
+            if (isStage(c)) {
+                return c;
+            }
+            if (isParallelBranch(c)) {
+                for (FlowNode n : parentToChildrenMap.get(c)) {
+                    if (isStage(n)) {
+                        return n;
+                    }
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Statuses and durations of all nodes are computed in a forward sweep over the graph, into arrays indexed by
+     * position of the node in the graph:
+     * <ul>
+     *     <li>duration of a stage lasts till the next stage starts, it's set once the sweep reaches the next stage</li>
+     *     <li>status of a stage with parallel branches comes from its branches, they follow the stage in the graph
+     *     and their statuses are known once the sweep is over</li>
+     * </ul>
+     * Nodes are then created from the arrays, no node is looked up in the graph again.
+     */
+    private List<BluePipelineNode> getPipelineNodes(Map<FlowNode, List<FlowNode>> graph, Link parentLink) {
+        List<FlowNode> graphNodes = new ArrayList<>(graph.keySet());
+        int size = graphNodes.size();
+        Map<FlowNode, Integer> positions = new HashMap<>();
+        NodeRunStatus[] statuses = new NodeRunStatus[size];
+        long[] startTimes = new long[size];
+        Long[] durations = new Long[size];
+
+        int previousStagePosition = -1;
+        for (int i = 0; i < size; i++) {
+            FlowNode n = graphNodes.get(i);
+            positions.put(n, i);
+            if (n instanceof InactiveFlowNodeWrapper) {
+                // future nodes have neither status nor duration
+                continue;
+            }
+            startTimes[i] = index.getStartTime(n);
+            statuses[i] = getOwnStatus(n);
+            if (isStage(n)) {
+                if (previousStagePosition >= 0 && startTimes[previousStagePosition] != 0) {
+                    durations[previousStagePosition] = startTimes[i] - startTimes[previousStagePosition];
+                }
+                previousStagePosition = i;
+            } else if (isParallelBranch(n)) {
+                FlowNode endNode = index.getEndNode(n);
+                if (endNode != null && startTimes[i] != 0) {
+                    durations[i] = index.getStartTime(endNode) - startTimes[i];
+                }
+            }
+        }
+        // status of the last stage is the status of the run
+        if (previousStage != null && positions.containsKey(previousStage)) {
+            statuses[positions.get(previousStage)] = PipelineNodeUtil.getStatus(execution);
+        }
 
+        long endTime = getEndTime();
+        List<BluePipelineNode> nodes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            FlowNode n = graphNodes.get(i);
+            NodeRunStatus status = statuses[i];
             if (!isExecuted(n)) {
                 status = new PipelineNodeGraphBuilder.NodeRunStatus(BlueRun.BlueRunResult.UNKNOWN, BlueRun.BlueRunState.QUEUED);
             } else if (status == null) {
-                status = getEffectiveBranchStatus(n);
+                status = getEffectiveBranchStatus(graph.get(n), statuses, positions);
+            }
+
+            Long durationInMillis = null;
+            if (!(n instanceof InactiveFlowNodeWrapper)) {
+                if (status.getState() == BlueRun.BlueRunState.FINISHED) {
+                    // nodes that no other node completes last till the end of the run
+                    durationInMillis = durations[i] != null || startTimes[i] == 0 ? durations[i] : endTime - startTimes[i];
+                } else if (status.getState() == BlueRun.BlueRunState.RUNNING) {
+                    durationInMillis = System.currentTimeMillis() - startTimes[i];
+                }
             }
-            nodes.add(new PipelineNodeImpl(run, n, status, this,parentLink));
+            nodes.add(new PipelineNodeImpl(run, n, status, durationInMillis, graph.get(n), this, parentLink));
         }
         return nodes;
     }
 
-    public List<FlowNode> getChildren(FlowNode parent){
-        return parentToChildrenMap.get(parent);
+    /**
+     * @return end time of the run if it's complete, current time otherwise
+     */
+    private long getEndTime(){
+        return run != null && execution != null && execution.isComplete()
+            ? run.getDuration() + run.getStartTimeInMillis()
+            : System.currentTimeMillis();
+    }
+
+    public synchronized List<FlowNode> getChildren(FlowNode parent){
+        List<FlowNode> children = parentToChildrenMap.get(parent);
+        return children == null ? null : new ArrayList<>(children);
+    }
+
+    private synchronized Map<FlowNode, List<FlowNode>> copyGraph(){
+        Map<FlowNode, List<FlowNode>> graph = new LinkedHashMap<>();
+        for(Map.Entry<FlowNode, List<FlowNode>> entry: parentToChildrenMap.entrySet()){
+            graph.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return graph;
     }
 
     @Nullable
-    public Long getDurationInMillis(FlowNode node){
-        long startTime = TimingAction.getStartTime(node);
+    public synchronized Long getDurationInMillis(FlowNode node){
+        long startTime = index.getStartTime(node);
         if( startTime == 0){
             return null;
         }
         /**
          * For Stage node:
          *
-         * Find next stage node
+         * Find next stage node from the edges of the stage, as getPipelineNode(String, Link) does
          * duration = nextStageNodeStartTime - thisStageNode.startTime
          *
          * For Parallel node:
@@ -319,32 +941,62 @@ public class PipelineNodeGraphBuilder {
          *
          */
         if(isStage(node)){
-            boolean lookForNextStage = false;
-            for(FlowNode n: parentToChildrenMap.keySet()){
-                if(n.equals(node)){
-                    lookForNextStage = true;
-                    continue;
-                }
-                if(lookForNextStage && isStage(n)){ //we got the next stage
-                    return TimingAction.getStartTime(n) - startTime;
-                }
+            List<FlowNode> children = parentToChildrenMap.get(node);
+            FlowNode nextStage = children == null ? null : getNextStage(children);
+            if(nextStage != null){
+                return index.getStartTime(nextStage) - startTime;
             }
         }else if(isParallelBranch(node)){
-            FlowNode endNode = PipelineNodeUtil.getStepEndNode(sortedNodes,node);
+            FlowNode endNode = index.getEndNode(node);
             if(endNode != null){
-                return TimingAction.getStartTime(endNode) - startTime;
+                return index.getStartTime(endNode) - startTime;
             }
         }else if(node instanceof StepAtomNode){
-            int i = sortedNodes.indexOf(node);
-            if(i >=0 && i+1 < sortedNodes.size()){
-                return TimingAction.getStartTime(sortedNodes.get(i+1)) - startTime;
+            if(!index.retainsAllNodes()){
+                return execution == null ? null : getStepDurationInMillis(run, execution, node);
+            }
+            int i = index.getPosition(node);
+            if(i >=0 && i+1 < index.size()){
+                return index.getStartTime(i+1) - startTime;
+            }
+        }
+        return getEndTime() - startTime;
+    }
+
+    /**
+     * Duration of a single step, computed without a graph: node following the step in id order is loaded straight
+     * from the execution, as {@link #getDurationInMillis(FlowNode)} does using the graph index.
+     */
+    @Nullable
+    static Long getStepDurationInMillis(@Nullable WorkflowRun run, FlowExecution execution, FlowNode step){
+        long startTime = TimingAction.getStartTime(step);
+        if(startTime == 0){
+            return null;
+        }
+        int id = FlowGraphIndex.parseId(step.getId());
+        if(id >= 0){
+            try {
+                FlowNode next = execution.getNode(Integer.toString(id + 1));
+                if(next != null){
+                    return TimingAction.getStartTime(next) - startTime;
+                }
+            } catch (IOException e) {
+                LOGGER.debug(String.format("No flow node following %s in %s", step.getId(), execution), e);
             }
         }
-        return run.getExecution().isComplete()
+        return run != null && execution.isComplete()
             ? (run.getDuration() + run.getStartTimeInMillis()) - startTime
             : System.currentTimeMillis() - startTime;
     }
 
+    /**
+     * @return run this graph belongs to, null if the execution is not backed by a run
+     */
+    @Nullable
+    WorkflowRun getRun(){
+        return run;
+    }
+
     private boolean isEnd(FlowNode n){
         return n instanceof StepEndNode;
     }
@@ -360,27 +1012,19 @@ public class PipelineNodeGraphBuilder {
     }
 
     private FlowNode getParentStageOfBranch(FlowNode node) {
-        if (node.getParents().size() == 0) {
-            return null;
-        }
-        FlowNode p = node.getParents().get(0);
-        if (isStage(p)) {
-            return p;
+        FlowNode p = node;
+        while (p.getParents().size() > 0) {
+            p = p.getParents().get(0);
+            if (isStage(p)) {
+                return p;
+            }
         }
-        return getParentStageOfBranch(p);
+        return null;
     }
 
     private FlowNode getLastStageNode() {
-        if (parentToChildrenMap.keySet().isEmpty()) {
-            return null;
-        }
-        FlowNode node = null;
-        for (FlowNode n : parentToChildrenMap.keySet()) {
-            if (isStage(n)) {
-                node = n;
-            }
-        }
-        return node;
+        // stages of the graph are the stages that are not nested in parallel, the last one added is the last one
+        return previousStage;
     }
 
     private FlowNode getLastBranchNode() {
@@ -396,15 +1040,15 @@ public class PipelineNodeGraphBuilder {
         return node;
     }
 
-    private NodeRunStatus getEffectiveBranchStatus(FlowNode n) {
-        List<FlowNode> children = parentToChildrenMap.get(n);
+    private NodeRunStatus getEffectiveBranchStatus(List<FlowNode> children, NodeRunStatus[] statuses, Map<FlowNode, Integer> positions) {
         BlueRun.BlueRunResult result = BlueRun.BlueRunResult.SUCCESS;
         BlueRun.BlueRunState state = BlueRun.BlueRunState.FINISHED;
         boolean atLeastOneBranchDidNotSucceed = false;
         boolean atLeastOneBranchisUnknown = false;
         for (FlowNode c : children) {
             if (isParallelBranch(c)) {
-                PipelineNodeGraphBuilder.NodeRunStatus s = nodeStatusMap.get(c);
+                Integer position = positions.get(c);
+                PipelineNodeGraphBuilder.NodeRunStatus s = position == null ? null : statuses[position];
                 if (s == null) {
                     continue;
                 }
@@ -436,11 +1080,11 @@ public class PipelineNodeGraphBuilder {
         return NotExecutedNodeAction.isExecuted(node);
     }
 
-    private List<FlowNode> addChild(FlowNode parent, FlowNode child) {
-        List<FlowNode> children = parentToChildrenMap.get(parent);
+    private static List<FlowNode> addChild(Map<FlowNode, List<FlowNode>> graph, FlowNode parent, FlowNode child) {
+        List<FlowNode> children = graph.get(parent);
         if (children == null) {
             children = new ArrayList<>();
-            parentToChildrenMap.put(parent, children);
+            graph.put(parent, children);
         }
         if (child != null) {
             children.add(child);
@@ -503,7 +1147,7 @@ public class PipelineNodeGraphBuilder {
         }
     }
 
-    public List<FlowNode> getSages(){
+    public synchronized List<FlowNode> getSages(){
         List<FlowNode> stages = new ArrayList<>();
 
         for(FlowNode n: parentToChildrenMap.keySet()){
@@ -514,7 +1158,7 @@ public class PipelineNodeGraphBuilder {
         return stages;
     }
 
-    public List<FlowNode> getParallelBranches(){
+    public synchronized List<FlowNode> getParallelBranches(){
         List<FlowNode> parallel = new ArrayList<>();
 
         for(FlowNode n: parentToChildrenMap.keySet()){
@@ -32,22 +32,44 @@ public class PipelineNodeImpl extends BluePipelineNode {
     private final Link self;
 
     public PipelineNodeImpl(WorkflowRun run, final FlowNode node, PipelineNodeGraphBuilder.NodeRunStatus status, PipelineNodeGraphBuilder nodeGraphBuilder, Link parentLink) {
+        this(run, node, status, nodeGraphBuilder.getChildren(node), nodeGraphBuilder, parentLink);
+    }
+
+    /**
+     * @param children nodes this node has edges to, they may differ from {@link PipelineNodeGraphBuilder#getChildren(FlowNode)}
+     *                 when this node is part of a union with future nodes
+     */
+    public PipelineNodeImpl(WorkflowRun run, final FlowNode node, PipelineNodeGraphBuilder.NodeRunStatus status, List<FlowNode> children, PipelineNodeGraphBuilder nodeGraphBuilder, Link parentLink) {
+        this(run, node, status, getDurationInMillis(node, status, nodeGraphBuilder), children, nodeGraphBuilder, parentLink);
+    }
+
+    /**
+     * @param durationInMillis duration of the node, computed by the caller along with its status
+     * @see PipelineNodeGraphBuilder#getPipelineNodes(Link)
+     */
+    PipelineNodeImpl(WorkflowRun run, final FlowNode node, PipelineNodeGraphBuilder.NodeRunStatus status, Long durationInMillis, List<FlowNode> children, PipelineNodeGraphBuilder nodeGraphBuilder, Link parentLink) {
         this.run = run;
         this.node = node;
-        this.children = nodeGraphBuilder.getChildren(node);
+        this.children = children;
         this.edges = buildEdges();
         this.status = status;
-        if(getStateObj() == BlueRun.BlueRunState.FINISHED){
-            this.durationInMillis = nodeGraphBuilder.getDurationInMillis(node);
-        }else if(getStateObj() == BlueRun.BlueRunState.RUNNING){
-            this.durationInMillis = System.currentTimeMillis()-TimingAction.getStartTime(node);
-        }else{
-            this.durationInMillis = null;
-        }
+        this.durationInMillis = durationInMillis;
         this.nodeGraphBuilder = nodeGraphBuilder;
         this.self = parentLink.rel(node.getId());
     }
 
+    private static Long getDurationInMillis(FlowNode node, PipelineNodeGraphBuilder.NodeRunStatus status, PipelineNodeGraphBuilder nodeGraphBuilder){
+        if(node instanceof PipelineNodeGraphBuilder.InactiveFlowNodeWrapper){
+            return null;
+        }
+        if(status.getState() == BlueRun.BlueRunState.FINISHED){
+            return nodeGraphBuilder.getDurationInMillis(node);
+        }else if(status.getState() == BlueRun.BlueRunState.RUNNING){
+            return System.currentTimeMillis()-TimingAction.getStartTime(node);
+        }
+        return null;
+    }
+
     @Override
     public String getId() {
         return node.getId();
@@ -55,7 +77,7 @@ public class PipelineNodeImpl extends BluePipelineNode {
 
     @Override
     public String getDisplayName() {
-        return PipelineNodeUtil.getDisplayName(node);
+        return nodeGraphBuilder.getDisplayName(node);
     }
 
     @Override
@@ -134,6 +156,19 @@ public class PipelineNodeImpl extends BluePipelineNode {
         }
     }
 
+    /**
+     * Adds edge to a node that is not part of this run's graph, such as a future node projected from the last
+     * successful run
+     */
+    void addEdge(final String id){
+        edges.add(new Edge() {
+            @Override
+            public String getId() {
+                return id;
+            }
+        });
+    }
+
     private List<Edge> buildEdges(){
         List<Edge> edges  = new ArrayList<>();
         if(!this.children.isEmpty()) {
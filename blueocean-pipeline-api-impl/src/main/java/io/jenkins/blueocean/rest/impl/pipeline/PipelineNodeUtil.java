@@ -1,6 +1,7 @@
 package io.jenkins.blueocean.rest.impl.pipeline;
 
 import com.google.common.base.Predicate;
+import io.jenkins.blueocean.commons.ServiceException;
 import io.jenkins.blueocean.rest.model.BlueRun;
 import org.jenkinsci.plugins.workflow.actions.ErrorAction;
 import org.jenkinsci.plugins.workflow.actions.LabelAction;
@@ -10,18 +11,44 @@ import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepEndNode;
 import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.jenkinsci.plugins.workflow.steps.FlowInterruptedException;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Vivek Pandey
  */
 public class PipelineNodeUtil {
 
+    /**
+     * Response header with version of the pipeline graph nodes and steps are served from
+     *
+     * @see PipelineNodeGraphBuilder#getVersion()
+     */
+    public static final String GRAPH_VERSION_HEADER = "X-Blueocean-Graph-Version";
+
+    /**
+     * Query parameter with a graph version the client has seen, only nodes or steps changed since are served then
+     */
+    public static final String SINCE_PARAMETER = "since";
+
+    /**
+     * Response header set when the pipeline graph ran out of its time budget, nodes and steps listed are those
+     * resolved so far. The response has Retry-After header as well.
+     *
+     * @see PipelineNodeGraphBuilder#isTruncated()
+     */
+    public static final String GRAPH_TRUNCATED_HEADER = "X-Blueocean-Graph-Truncated";
+
     public static BlueRun.BlueRunResult getStatus(ErrorAction errorAction){
         if(errorAction == null){
             return BlueRun.BlueRunResult.SUCCESS;
@@ -39,7 +66,10 @@ public class PipelineNodeUtil {
     }
 
     public static PipelineNodeGraphBuilder.NodeRunStatus getStatus(WorkflowRun run){
-        FlowExecution execution = run.getExecution();
+        return getStatus(run.getExecution());
+    }
+
+    public static PipelineNodeGraphBuilder.NodeRunStatus getStatus(@Nullable FlowExecution execution){
         BlueRun.BlueRunResult result;
         BlueRun.BlueRunState state;
         if (execution == null) {
@@ -76,6 +106,39 @@ public class PipelineNodeUtil {
             node.getAction(ThreadNameAction.class) != null;
     }
 
+    /**
+     * Gives the stage or parallel branch the newest current head of a running execution is in, without building the
+     * pipeline graph.
+     *
+     * Walks back from the head over first parents. A block that is already closed is skipped at once by jumping from
+     * its end node to its start node, so only the enclosing blocks and the nodes preceding the head in each of them are
+     * visited, not the whole graph.
+     *
+     * @return nearest stage or parallel branch, null if execution is complete or head is not in any
+     */
+    public static @CheckForNull FlowNode getCurrentStage(@Nullable FlowExecution execution){
+        if(execution == null || execution.isComplete()){
+            return null;
+        }
+        FlowNode head = null;
+        for(FlowNode n: execution.getCurrentHeads()){
+            if(head == null || FlowGraphIndex.parseId(n.getId()) > FlowGraphIndex.parseId(head.getId())){
+                head = n;
+            }
+        }
+        FlowNode n = head;
+        while(n != null){
+            if(n instanceof BlockEndNode){
+                n = ((BlockEndNode) n).getStartNode();
+            }else if(isStage(n) || isParallelBranch(n)){
+                return n;
+            }
+            List<FlowNode> parents = n.getParents();
+            n = parents.isEmpty() ? null : parents.get(0);
+        }
+        return null;
+    }
+
     public static Predicate<FlowNode> isLoggable = new Predicate<FlowNode>() {
         @Override
         public boolean apply(@Nullable FlowNode input) {
@@ -94,13 +157,13 @@ public class PipelineNodeUtil {
 
 
     private static FlowNode getClosestEnclosingParallelBranch(List<FlowNode> sortedNodes, FlowNode node, List<FlowNode> parents){
-        for(FlowNode n: parents){
-            if(isParallelBranch(n)){
-                if(isInBlock(n, getStepEndNode(sortedNodes, n), node)) {
-                    return n;
-                }
+        // walks the first parents iteratively, deep graphs would overflow the stack otherwise
+        while(!parents.isEmpty()){
+            FlowNode n = parents.get(0);
+            if(isParallelBranch(n) && isInBlock(n, getStepEndNode(sortedNodes, n), node)){
+                return n;
             }
-            return getClosestEnclosingParallelBranch(sortedNodes, node, n.getParents());
+            parents = n.getParents();
         }
         return null;
     }
@@ -133,15 +196,19 @@ public class PipelineNodeUtil {
         return isChildOf(startNode, c) && isChildOf(c, endNode);
     }
 
+    /**
+     * Follows the first parent of the given child up to the start of the pipeline, cost is linear in the depth of
+     * the graph. {@link FlowGraphIndex#isInBlock(FlowNode, FlowNode)} answers the same in constant time for nodes of
+     * an index.
+     */
     public static boolean isChildOf(FlowNode parent, FlowNode child){
-        if(child == null){
-            return false;
-        }
-        for(FlowNode p:child.getParents()){
+        FlowNode c = child;
+        while(c != null && !c.getParents().isEmpty()){
+            FlowNode p = c.getParents().get(0);
             if(p.equals(parent)){
                 return true;
             }
-            return isChildOf(parent, p);
+            c = p;
         }
         return false;
     }
@@ -156,4 +223,43 @@ public class PipelineNodeUtil {
         return false;
     }
 
+    /**
+     * @return graph version given by {@link #SINCE_PARAMETER} of the current request, -1 if there is none
+     */
+    public static int getSinceVersion(){
+        StaplerRequest req = Stapler.getCurrentRequest();
+        String since = req == null ? null : req.getParameter(SINCE_PARAMETER);
+        if(since == null){
+            return -1;
+        }
+        int version = FlowGraphIndex.parseId(since);
+        if(version < 0){
+            throw new ServiceException.BadRequestExpception(String.format("Invalid %s parameter: %s, it must be a graph version given by %s header",
+                SINCE_PARAMETER, since, GRAPH_VERSION_HEADER));
+        }
+        return version;
+    }
+
+    /**
+     * Sets {@link #GRAPH_TRUNCATED_HEADER} of the current response, with a Retry-After hint of one time budget
+     */
+    public static void setGraphTruncated(){
+        StaplerResponse rsp = Stapler.getCurrentResponse();
+        if(rsp != null){
+            long retryAfter = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(PipelineNodeGraphBuilder.TIME_BUDGET_MILLIS));
+            rsp.setHeader(GRAPH_TRUNCATED_HEADER, "true");
+            rsp.setHeader("Retry-After", Long.toString(retryAfter));
+        }
+    }
+
+    /**
+     * Sets {@link #GRAPH_VERSION_HEADER} of the current response
+     */
+    public static void setGraphVersion(int version){
+        StaplerResponse rsp = Stapler.getCurrentResponse();
+        if(rsp != null){
+            rsp.setHeader(GRAPH_VERSION_HEADER, Integer.toString(version));
+        }
+    }
+
 }
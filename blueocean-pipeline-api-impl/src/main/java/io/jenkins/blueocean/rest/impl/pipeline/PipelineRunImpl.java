@@ -23,6 +23,7 @@ import io.jenkins.blueocean.service.embedded.rest.ChangeSetResource;
 import io.jenkins.blueocean.service.embedded.rest.QueueContainerImpl;
 import io.jenkins.blueocean.service.embedded.rest.StoppableRun;
 import org.jenkinsci.plugins.workflow.cps.replay.ReplayAction;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.export.Exported;
@@ -85,7 +86,11 @@ public class PipelineRunImpl extends AbstractRunImpl<WorkflowRun> {
 
     @Override
     public BluePipelineStepContainer getSteps() {
-        return new PipelineStepContainerImpl(null, new PipelineNodeGraphBuilder(run), getLink());
+        PipelineGraphSnapshot snapshot = PipelineGraphSnapshot.get(run, PipelineNodeGraphBuilder.newDeadline());
+        if(snapshot != null){
+            return new PipelineSnapshotStepContainer(run, snapshot, snapshot.getSteps(), getLink());
+        }
+        return new PipelineStepContainerImpl(run, getLink());
     }
 
     @Override
@@ -112,6 +117,29 @@ public class PipelineRunImpl extends AbstractRunImpl<WorkflowRun> {
         }
     }
 
+    /**
+     * Stage or parallel branch this run is in while it's running, served at <code>/currentStage/</code> so clients
+     * that poll progress don't need the full nodes graph. It's read from the live graph of the run if one is
+     * maintained, resolved from the current heads of the execution only otherwise.
+     */
+    public PipelineCurrentStage getCurrentStage() {
+        FlowNode stage = LivePipelineGraph.getCurrentStage(run);
+        if(stage == null){
+            stage = PipelineNodeUtil.getCurrentStage(run.getExecution());
+        }
+        return stage == null ? null : new PipelineCurrentStage(stage, getLink().rel("nodes"));
+    }
+
+    /**
+     * Current stage as exported with the run, in run listings as well, so it's only read from the live graph of the
+     * run and left out if the run has none. See {@link #getCurrentStage()} for the stage resolved on demand.
+     */
+    @Exported(name = "currentStage", inline = true)
+    public PipelineCurrentStage getLiveCurrentStage() {
+        FlowNode stage = LivePipelineGraph.getCurrentStage(run);
+        return stage == null ? null : new PipelineCurrentStage(stage, getLink().rel("nodes"));
+    }
+
     @Extension(ordinal = 1)
     public static class FactoryImpl extends BlueRunFactory {
 
@@ -0,0 +1,123 @@
+package io.jenkins.blueocean.rest.impl.pipeline;
+
+import io.jenkins.blueocean.rest.hal.Link;
+import io.jenkins.blueocean.rest.model.BlueActionProxy;
+import io.jenkins.blueocean.rest.model.BluePipelineNode;
+import io.jenkins.blueocean.rest.model.BluePipelineStep;
+import io.jenkins.blueocean.rest.model.BluePipelineStepContainer;
+import io.jenkins.blueocean.rest.model.BlueRun;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * {@link BluePipelineNode} served from {@link PipelineGraphSnapshot} of a completed run, or from the cached nodes of
+ * a run in progress.
+ *
+ * The {@link FlowNode} is only loaded when actions of this node are requested, steps of a run in progress are only
+ * looked up in its graph when they are listed.
+ *
+ * @see PipelineNodeImpl
+ */
+public class PipelineSnapshotNodeImpl extends BluePipelineNode {
+    private final WorkflowRun run;
+    private final PipelineGraphSnapshot snapshot;
+    private final PipelineGraphSnapshot.Node node;
+    private final Link self;
+
+    public PipelineSnapshotNodeImpl(WorkflowRun run, PipelineGraphSnapshot snapshot, PipelineGraphSnapshot.Node node, Link parentLink) {
+        this.run = run;
+        this.snapshot = snapshot;
+        this.node = node;
+        this.self = parentLink.rel(node.getId());
+    }
+
+    @Override
+    public String getId() {
+        return node.getId();
+    }
+
+    @Override
+    public String getDisplayName() {
+        return node.getDisplayName();
+    }
+
+    @Override
+    public BlueRun.BlueRunResult getResult() {
+        return node.getResult();
+    }
+
+    @Override
+    public BlueRun.BlueRunState getStateObj() {
+        return node.getState();
+    }
+
+    @Override
+    public Date getStartTime() {
+        return node.getStartTime() == null ? null : new Date(node.getStartTime());
+    }
+
+    @Override
+    public List<Edge> getEdges() {
+        List<Edge> edges = new ArrayList<>();
+        for(final String id: node.getEdges()){
+            edges.add(new Edge() {
+                @Override
+                public String getId() {
+                    return id;
+                }
+            });
+        }
+        return edges;
+    }
+
+    @Override
+    public Long getDurationInMillis() {
+        return node.getDurationInMillis();
+    }
+
+    /**
+     * No logs for Node as Node by itself doesn't have any log to repot, its steps inside it that has logs
+     *
+     * @see BluePipelineStep#getLog()
+     */
+    @Override
+    public Object getLog() {
+        return null;
+    }
+
+    @Override
+    public BluePipelineStepContainer getSteps() {
+        if(snapshot.isLive() && !node.isInactive()){
+            // steps of a run in progress keep changing, they come from its live graph
+            return new PipelineStepContainerImpl(run, node.getId(), self);
+        }
+        return new PipelineSnapshotStepContainer(run, snapshot, snapshot.getSteps(node), self);
+    }
+
+    /**
+     * @return record this node is served from
+     */
+    PipelineGraphSnapshot.Node getNode() {
+        return node;
+    }
+
+    @Override
+    public Collection<BlueActionProxy> getActions() {
+        FlowNode flowNode = node.isInactive() ? null : PipelineSnapshotStepImpl.getFlowNode(run, node.getId());
+        if(flowNode == null){
+            return Collections.emptyList();
+        }
+        return PipelineImpl.getActionProxies(flowNode.getAllActions(), this);
+    }
+
+    @Override
+    public Link getLink() {
+        return self;
+    }
+}
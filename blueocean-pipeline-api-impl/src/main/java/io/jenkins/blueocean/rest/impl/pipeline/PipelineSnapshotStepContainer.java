@@ -0,0 +1,72 @@
+package io.jenkins.blueocean.rest.impl.pipeline;
+
+import io.jenkins.blueocean.commons.ServiceException;
+import io.jenkins.blueocean.rest.hal.Link;
+import io.jenkins.blueocean.rest.model.BluePipelineStep;
+import io.jenkins.blueocean.rest.model.BluePipelineStepContainer;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Steps of a completed run, or of one of its nodes, served from {@link PipelineGraphSnapshot}. Steps of a completed
+ * run don't change, so with {@link PipelineNodeUtil#SINCE_PARAMETER} query parameter they are either all listed or
+ * none is.
+ *
+ * @see PipelineStepContainerImpl
+ */
+public class PipelineSnapshotStepContainer extends BluePipelineStepContainer {
+    private final WorkflowRun run;
+    private final PipelineGraphSnapshot snapshot;
+    private final List<PipelineGraphSnapshot.Step> steps;
+    private final Link self;
+
+    public PipelineSnapshotStepContainer(WorkflowRun run, PipelineGraphSnapshot snapshot, List<PipelineGraphSnapshot.Step> steps, Link parentLink) {
+        this.run = run;
+        this.snapshot = snapshot;
+        this.steps = steps;
+        this.self = parentLink.rel("steps");
+    }
+
+    @Override
+    public BluePipelineStep get(String name) {
+        PipelineGraphSnapshot.Step step = snapshot.getStep(name);
+        if(step == null){
+            PipelineGraphSnapshot.Node node = snapshot.getNode(name);
+            if(node != null){
+                throw new ServiceException.BadRequestExpception(String.format("Node %s:%s is not a step node.", name, node.getDisplayName()));
+            }
+            throw new ServiceException.NotFoundException(String.format("Node %s is not found", name));
+        }
+        return new PipelineSnapshotStepImpl(run, step, getLink());
+    }
+
+    @Override
+    public Iterator<BluePipelineStep> iterator() {
+        return iterator(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Iterator<BluePipelineStep> iterator(int start, int limit) {
+        PipelineNodeUtil.setGraphVersion(snapshot.getVersion());
+        if(snapshot.isTruncated()){
+            PipelineNodeUtil.setGraphTruncated();
+        }
+        List<BluePipelineStep> pipelineSteps = new ArrayList<>();
+        if(PipelineNodeUtil.getSinceVersion() >= snapshot.getVersion() || start >= steps.size()){
+            return pipelineSteps.iterator();
+        }
+        int end = limit > steps.size() - start ? steps.size() : start + limit;
+        for(PipelineGraphSnapshot.Step step: steps.subList(start, end)){
+            pipelineSteps.add(new PipelineSnapshotStepImpl(run, step, getLink()));
+        }
+        return pipelineSteps.iterator();
+    }
+
+    @Override
+    public Link getLink() {
+        return self;
+    }
+}
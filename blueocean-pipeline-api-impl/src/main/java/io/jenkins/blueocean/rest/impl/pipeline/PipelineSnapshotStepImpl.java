@@ -0,0 +1,106 @@
+package io.jenkins.blueocean.rest.impl.pipeline;
+
+import io.jenkins.blueocean.rest.hal.Link;
+import io.jenkins.blueocean.rest.model.BlueActionProxy;
+import io.jenkins.blueocean.rest.model.BluePipelineStep;
+import io.jenkins.blueocean.rest.model.BlueRun;
+import io.jenkins.blueocean.service.embedded.rest.LogResource;
+import org.jenkinsci.plugins.workflow.actions.LogAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * {@link BluePipelineStep} served from {@link PipelineGraphSnapshot} of a completed run.
+ *
+ * The {@link FlowNode} is only loaded when log or actions of this step are requested.
+ *
+ * @see PipelineStepImpl
+ */
+public class PipelineSnapshotStepImpl extends BluePipelineStep {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineSnapshotStepImpl.class);
+
+    private final WorkflowRun run;
+    private final PipelineGraphSnapshot.Step step;
+    private final Link self;
+
+    public PipelineSnapshotStepImpl(WorkflowRun run, PipelineGraphSnapshot.Step step, Link parent) {
+        this.run = run;
+        this.step = step;
+        this.self = parent.rel(step.getId());
+    }
+
+    @Override
+    public String getId() {
+        return step.getId();
+    }
+
+    @Override
+    public String getDisplayName() {
+        return step.getDisplayName();
+    }
+
+    @Override
+    public BlueRun.BlueRunResult getResult() {
+        return step.getResult();
+    }
+
+    @Override
+    public BlueRun.BlueRunState getStateObj() {
+        return step.getState();
+    }
+
+    @Override
+    public Date getStartTime() {
+        return step.getStartTime() == null ? null : new Date(step.getStartTime());
+    }
+
+    @Override
+    public Long getDurationInMillis() {
+        return step.getDurationInMillis();
+    }
+
+    @Override
+    public Object getLog() {
+        FlowNode node = getFlowNode(run, step.getId());
+        if(PipelineNodeUtil.isLoggable.apply(node)){
+            return new LogResource(node.getAction(LogAction.class).getLogText());
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<BlueActionProxy> getActions() {
+        FlowNode node = getFlowNode(run, step.getId());
+        if(node == null){
+            return Collections.emptyList();
+        }
+        return PipelineImpl.getActionProxies(node.getActions(), this);
+    }
+
+    @Override
+    public Link getLink() {
+        return self;
+    }
+
+    static @CheckForNull FlowNode getFlowNode(WorkflowRun run, String id){
+        FlowExecution execution = run.getExecution();
+        if(execution == null){
+            return null;
+        }
+        try {
+            return execution.getNode(id);
+        } catch (IOException e) {
+            LOGGER.error(String.format("Failed to load flow node %s of %s: %s", id, run, e.getMessage()), e);
+            return null;
+        }
+    }
+}
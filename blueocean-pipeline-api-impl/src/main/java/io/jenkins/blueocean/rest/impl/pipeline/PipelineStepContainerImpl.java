@@ -5,51 +5,135 @@ import io.jenkins.blueocean.rest.hal.Link;
 import io.jenkins.blueocean.rest.model.BluePipelineStep;
 import io.jenkins.blueocean.rest.model.BluePipelineStepContainer;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.CheckForNull;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
 /**
+ * Steps of a pipeline run or of one of its nodes. Listing gives graph version in
+ * {@link PipelineNodeUtil#GRAPH_VERSION_HEADER} header, with {@link PipelineNodeUtil#SINCE_PARAMETER} query parameter
+ * only steps changed since the given version are listed.
+ *
+ * A single step is served without the graph: its flow node is loaded by id from the execution and only its own
+ * status and duration are computed. Graph is computed within a time budget, if it runs out the steps resolved so far
+ * are listed and the response has {@link PipelineNodeUtil#GRAPH_TRUNCATED_HEADER} header.
+ *
  * @author Vivek Pandey
  */
 public class PipelineStepContainerImpl extends BluePipelineStepContainer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineStepContainerImpl.class);
+
+    private final WorkflowRun run;
+    /** Id of the stage or parallel branch node whose steps these are, null for all steps of the run */
+    private final String nodeId;
+    /** Flow node with that id, looked up in the graph when steps are listed if it's not given */
     private final FlowNode node;
-    private final PipelineNodeGraphBuilder graphBuilder;
+    private PipelineNodeGraphBuilder graphBuilder;
     private final Link self;
 
     public PipelineStepContainerImpl(FlowNode node, PipelineNodeGraphBuilder graphBuilder, Link parentLink) {
         this.self = parentLink.rel("steps");
+        this.run = graphBuilder.getRun();
+        this.nodeId = node.getId();
         this.node = node;
         this.graphBuilder = graphBuilder;
     }
 
+    /**
+     * All steps of the given run, graph of the run is computed only if steps are listed
+     */
+    public PipelineStepContainerImpl(WorkflowRun run, Link parentLink) {
+        this(run, null, parentLink);
+    }
+
+    /**
+     * Steps of the stage or parallel branch node with the given id, looked up in the graph of the run only if steps
+     * are listed
+     */
+    PipelineStepContainerImpl(WorkflowRun run, @CheckForNull String nodeId, Link parentLink) {
+        this.self = parentLink.rel("steps");
+        this.run = run;
+        this.nodeId = nodeId;
+        this.node = null;
+    }
+
     @Override
     public BluePipelineStep get(String name) {
-        FlowNode node = graphBuilder.getNodeById(name);
+        FlowExecution execution = run == null ? null : run.getExecution();
+        FlowNode node = execution == null
+            ? getGraphBuilder().getNodeById(name)
+            : getFlowNode(execution, name);
         if(node == null){
             throw new ServiceException.NotFoundException(String.format("Node %s is not found", name));
         }
         if(!(node instanceof StepAtomNode)){
             throw new ServiceException.BadRequestExpception(String.format("Node %s:%s is not a step node.", name, node.getDisplayName()));
         }
-        return new PipelineStepImpl(node, graphBuilder, getLink());
+        if(execution == null){
+            return new PipelineStepImpl(node, getGraphBuilder(), getLink());
+        }
+        return new PipelineStepImpl(node, PipelineNodeGraphBuilder.getStepDurationInMillis(run, execution, node), getLink());
+    }
+
+    private @CheckForNull FlowNode getFlowNode(FlowExecution execution, String id){
+        if(FlowGraphIndex.parseId(id) < 0){
+            return null;
+        }
+        try {
+            return execution.getNode(id);
+        } catch (IOException e) {
+            LOGGER.debug(String.format("No flow node with id %s in %s", id, run), e);
+            return null;
+        }
+    }
+
+    private synchronized PipelineNodeGraphBuilder getGraphBuilder(){
+        if(graphBuilder == null){
+            graphBuilder = LivePipelineGraph.getGraphBuilder(run, PipelineNodeGraphBuilder.newDeadline());
+        }
+        return graphBuilder;
     }
 
     @Override
     public Iterator<BluePipelineStep> iterator() {
-        List<BluePipelineStep> pipelineSteps = new ArrayList<>();
-        if(node!=null) {
-            List<FlowNode> nodes = graphBuilder.getSteps(node);
-            for (FlowNode node : nodes) {
-                pipelineSteps.add(new PipelineStepImpl(node, graphBuilder, getLink()));
-            }
+        return iterator(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Only the requested page of steps is selected from the graph, step objects with their status and duration are
+     * created for it alone.
+     */
+    @Override
+    public Iterator<BluePipelineStep> iterator(int start, int limit) {
+        int since = PipelineNodeUtil.getSinceVersion();
+        PipelineNodeGraphBuilder graphBuilder = getGraphBuilder();
+        // version is taken first, changes made while steps are computed are listed again next time
+        PipelineNodeUtil.setGraphVersion(graphBuilder.getVersion());
+
+        List<FlowNode> nodes;
+        if(nodeId == null){
+            nodes = graphBuilder.getSteps(null, since, start, limit);
         }else{
-            List<FlowNode> nodes = graphBuilder.getAllSteps();
-            for(FlowNode node:nodes){
-                pipelineSteps.add(new PipelineStepImpl(node, graphBuilder, getLink()));
-            }
+            FlowNode node = this.node != null ? this.node : graphBuilder.getNodeById(nodeId);
+            nodes = node == null ? Collections.<FlowNode>emptyList() : graphBuilder.getSteps(node, since, start, limit);
+        }
+        // checked once steps are found, streaming them may run out of the time budget as well
+        if(graphBuilder.isTruncated()) {
+            PipelineNodeUtil.setGraphTruncated();
+        }
+
+        List<BluePipelineStep> pipelineSteps = new ArrayList<>();
+        for (FlowNode node : nodes) {
+            pipelineSteps.add(new PipelineStepImpl(node, graphBuilder, getLink()));
         }
         return pipelineSteps.iterator();
     }
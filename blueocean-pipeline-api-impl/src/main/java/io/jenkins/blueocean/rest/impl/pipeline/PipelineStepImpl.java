@@ -22,12 +22,18 @@ public class PipelineStepImpl extends BluePipelineStep {
     private final Link self;
 
     public PipelineStepImpl(FlowNode node, PipelineNodeGraphBuilder graphBuilder, Link parent) {
-        assert graphBuilder != null;
+        this(node, graphBuilder.getDurationInMillis(node), parent);
+    }
+
+    /**
+     * @param durationInMillis duration of the step, computed by the caller
+     */
+    PipelineStepImpl(FlowNode node, Long durationInMillis, Link parent) {
         assert node != null;
         this.self = parent.rel(node.getId());
         this.node = node;
         this.status = new PipelineNodeGraphBuilder.NodeRunStatus(node);
-        this.durationInMillis = graphBuilder.getDurationInMillis(node);
+        this.durationInMillis = durationInMillis;
     }
 
     @Override
@@ -0,0 +1,231 @@
+package io.jenkins.blueocean.rest.impl.pipeline;
+
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds steps of a pipeline as its flow nodes are added to a {@link FlowGraphIndex} in id order, along with the
+ * stages and parallel branches each step belongs to. Steps are found in the same single pass over the nodes that
+ * builds an index keeping only stages and parallel branches, see {@link FlowGraphIndex#stagesOnly()}, so no graph of
+ * all the nodes is needed.
+ *
+ * Steps of a stage are the steps that follow it up to the next stage outside of its block, steps of a parallel
+ * branch are the steps inside its block, same as {@link PipelineNodeGraphBuilder#getStageSteps(FlowNode)} and
+ * {@link PipelineNodeGraphBuilder#getParallelBranchSteps(FlowNode)}. A step is complete once the node following it is
+ * added, its duration is computed from that node.
+ */
+abstract class StepRecorder {
+    /** Stages whose steps are still being added, that is the ones not followed by a stage outside of their block yet */
+    private final List<FlowNode> openStages = new ArrayList<>();
+
+    /** Last step added, completed when the next node is added */
+    private FlowNode pendingStep;
+    private long pendingStartTime;
+    private List<FlowNode> pendingOwners;
+    /** True if the pending step is listed with all steps of the run, legacy stages are not */
+    private boolean pendingListed;
+
+    /**
+     * Called with each node right after it's added to the index
+     */
+    final void add(FlowGraphIndex index, FlowNode node){
+        if(pendingStep != null){
+            long startTime = index.getStartTime(node);
+            complete(node, pendingStartTime == 0 ? null : startTime - pendingStartTime);
+        }
+        boolean stage = index.isStage(node);
+        if(stage){
+            for(Iterator<FlowNode> it = openStages.iterator(); it.hasNext();){
+                FlowNode s = it.next();
+                if(!index.isInBlock(s, node)){
+                    it.remove();
+                    onStageEnd(s);
+                }
+            }
+        }
+        int position = index.getPosition(node);
+        if(position >= 0 && index.isAtom(position)){
+            List<FlowNode> owners = new ArrayList<>(openStages);
+            for(FlowNode b = index.getEnclosingBranch(node); b != null; b = index.getEnclosingBranch(b)){
+                owners.add(b);
+            }
+            pendingStep = node;
+            pendingStartTime = index.getStartTime(position);
+            pendingOwners = owners;
+            pendingListed = !stage;
+        }
+        if(stage){
+            openStages.add(node);
+        }
+        onNode(node);
+    }
+
+    /**
+     * Completes the last step once there are no more nodes to add
+     *
+     * @param endTime end time of the run, or current time if it's still running
+     */
+    final void finish(long endTime){
+        if(pendingStep != null){
+            complete(null, pendingStartTime == 0 ? null : endTime - pendingStartTime);
+        }
+    }
+
+    private void complete(@CheckForNull FlowNode next, @CheckForNull Long durationInMillis){
+        FlowNode step = pendingStep;
+        pendingStep = null;
+        onStep(step, pendingStartTime, durationInMillis, pendingOwners, pendingListed, next);
+    }
+
+    /**
+     * @param owners stages and parallel branches the step belongs to
+     * @param listed true if the step is listed with all steps of the run
+     * @param next node following the step, null if it's the last node
+     */
+    protected abstract void onStep(FlowNode step, long startTime, @CheckForNull Long durationInMillis,
+                                   List<FlowNode> owners, boolean listed, @CheckForNull FlowNode next);
+
+    /**
+     * Called once no more steps are added to the given stage
+     */
+    protected void onStageEnd(FlowNode stage){
+    }
+
+    /**
+     * Called after the given node is added and the steps it completes are given
+     */
+    protected void onNode(FlowNode node){
+    }
+
+    private static boolean contains(List<FlowNode> nodes, FlowNode node){
+        for(FlowNode n: nodes){
+            if(n.getId().equals(node.getId())){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records of all steps, as persisted in {@link PipelineGraphSnapshot}, with ids of the steps of each stage and
+     * parallel branch. Flow nodes of the steps are not kept.
+     */
+    static final class Records extends StepRecorder {
+        private final List<PipelineGraphSnapshot.Step> steps = new ArrayList<>();
+        private final Map<String, List<String>> stepIds = new HashMap<>();
+
+        @Override
+        protected void onStep(FlowNode step, long startTime, @CheckForNull Long durationInMillis,
+                              List<FlowNode> owners, boolean listed, @CheckForNull FlowNode next) {
+            if(!listed && owners.isEmpty()){
+                return;
+            }
+            PipelineNodeGraphBuilder.NodeRunStatus status = new PipelineNodeGraphBuilder.NodeRunStatus(step);
+            steps.add(new PipelineGraphSnapshot.Step(step.getId(), step.getDisplayName(), status.getResult(),
+                status.getState(), startTime, durationInMillis));
+            for(FlowNode owner: owners){
+                List<String> ids = stepIds.get(owner.getId());
+                if(ids == null){
+                    ids = new ArrayList<>();
+                    stepIds.put(owner.getId(), ids);
+                }
+                ids.add(step.getId());
+            }
+        }
+
+        /**
+         * @return records of the steps of the run, in id order
+         */
+        List<PipelineGraphSnapshot.Step> getSteps() {
+            return steps;
+        }
+
+        /**
+         * @return ids of the steps of the given stage or parallel branch
+         */
+        List<String> getStepIds(FlowNode node) {
+            List<String> ids = stepIds.get(node.getId());
+            return ids == null ? Collections.<String>emptyList() : ids;
+        }
+    }
+
+    /**
+     * A page of the steps of a stage, of a parallel branch or of the whole run, only flow nodes of the steps in the
+     * page are kept. The page is done once it's full or once no more steps can be added to the node.
+     */
+    static final class Page extends StepRecorder {
+        private final FlowNode node;
+        private final int since;
+        private final int start;
+        private final int limit;
+        private int skipped;
+        private boolean over;
+        private final List<FlowNode> steps = new ArrayList<>();
+
+        /**
+         * @param node stage or parallel branch node, null for all steps of the run
+         * @param since graph version, only steps changed since are listed, negative for all steps
+         * @see PipelineNodeGraphBuilder#isStepChangedSince(FlowNode, int)
+         */
+        Page(@CheckForNull FlowNode node, int since, int start, int limit) {
+            this.node = node;
+            this.since = since;
+            this.start = start;
+            this.limit = limit;
+        }
+
+        @Override
+        protected void onStep(FlowNode step, long startTime, @CheckForNull Long durationInMillis,
+                              List<FlowNode> owners, boolean listed, @CheckForNull FlowNode next) {
+            if(node == null ? !listed : !contains(owners, node)){
+                return;
+            }
+            if(since >= 0 && next != null && !step.isRunning() && !isNewerThan(step) && !isNewerThan(next)){
+                return;
+            }
+            if(skipped < start){
+                skipped++;
+            }else if(steps.size() < limit){
+                steps.add(step);
+            }
+        }
+
+        private boolean isNewerThan(FlowNode n){
+            return FlowGraphIndex.parseId(n.getId()) > since;
+        }
+
+        @Override
+        protected void onStageEnd(FlowNode stage) {
+            if(node != null && stage.getId().equals(node.getId())){
+                over = true;
+            }
+        }
+
+        @Override
+        protected void onNode(FlowNode n) {
+            // end of the parallel branch
+            if(node != null && n instanceof BlockEndNode && ((BlockEndNode<?>) n).getStartNode().getId().equals(node.getId())){
+                over = true;
+            }
+        }
+
+        /**
+         * @return true if no more steps can be added to this page
+         */
+        boolean isDone() {
+            return over || steps.size() >= limit;
+        }
+
+        List<FlowNode> getSteps() {
+            return steps;
+        }
+    }
+}
@@ -446,6 +446,12 @@ public class MultiBranchTest extends PipelineBaseTest {
                 Assert.assertEquals(commitId, m.get("commitId"));
             }
         }
+
+        // pages of the merged runs follow the same order
+        List<Map> page = get("/organizations/jenkins/pipelines/p/runs/?start=1&limit=1", List.class);
+        Assert.assertEquals(1, page.size());
+        Assert.assertEquals(resp.get(1).get("pipeline"), page.get(0).get("pipeline"));
+        Assert.assertEquals(resp.get(1).get("id"), page.get(0).get("id"));
     }
 
     @Test
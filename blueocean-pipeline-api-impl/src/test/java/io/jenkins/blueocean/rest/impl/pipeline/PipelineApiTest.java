@@ -232,6 +232,14 @@ public class PipelineApiTest extends PipelineBaseTest {
         Assert.assertEquals(2, l.size());
         Assert.assertEquals("io.jenkins.blueocean.service.embedded.rest.QueueItemImpl", ((Map) l.get(0)).get("_class"));
         Assert.assertEquals("io.jenkins.blueocean.rest.impl.pipeline.PipelineRunImpl", ((Map) l.get(1)).get("_class"));
+
+        l = request().get("/organizations/jenkins/pipelines/pipeline1/activities/?start=1&limit=1").build(List.class);
+        Assert.assertEquals(1, l.size());
+        Assert.assertEquals("io.jenkins.blueocean.rest.impl.pipeline.PipelineRunImpl", ((Map) l.get(0)).get("_class"));
+        Assert.assertEquals(r.getId(), ((Map) l.get(0)).get("id"));
+
+        l = request().get("/organizations/jenkins/pipelines/pipeline1/activities/?start=2&limit=1").build(List.class);
+        Assert.assertEquals(0, l.size());
     }
 
     @Test
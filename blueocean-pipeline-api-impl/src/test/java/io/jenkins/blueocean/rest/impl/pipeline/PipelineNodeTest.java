@@ -1,6 +1,9 @@
 package io.jenkins.blueocean.rest.impl.pipeline;
 
+import com.mashape.unirest.http.HttpResponse;
 import hudson.model.Result;
+import io.jenkins.blueocean.rest.hal.Link;
+import io.jenkins.blueocean.rest.model.BluePipelineNode;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
@@ -9,7 +12,9 @@ import org.jenkinsci.plugins.workflow.support.visualization.table.FlowGraphTable
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -339,6 +344,14 @@ public class PipelineNodeTest extends PipelineBaseTest {
 
         List<Map> resp = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/", List.class);
         Assert.assertEquals(2, resp.size());
+
+        // future nodes are projected from the shape of the last successful run, computed once
+        PipelineGraphSnapshot template = PipelineGraphSnapshot.getShapeTemplate(job1);
+        Assert.assertNotNull(template);
+        Assert.assertSame(template, PipelineGraphSnapshot.getShapeTemplate(job1));
+        Assert.assertEquals(4, template.getNodes().size());
+        Assert.assertTrue(template.getNodes().get(0).isInactive());
+        Assert.assertTrue(template.getSteps().isEmpty());
     }
 
     @Test
@@ -1501,6 +1514,470 @@ public class PipelineNodeTest extends PipelineBaseTest {
         Assert.assertEquals("FINISHED", nodes.get(2).get("state"));
     }
 
+    @Test
+    public void nodesFromGraphSnapshotTest() throws Exception {
+        WorkflowJob job1 = j.jenkins.createProject(WorkflowJob.class, "pipeline1");
+        job1.setDefinition(new CpsFlowDefinition("stage 'build'\n" +
+            "node{\n" +
+            "  echo \"Building...\"\n" +
+            "}\n" +
+            "\n" +
+            "stage 'test'\n" +
+            "parallel 'unit':{\n" +
+            "  node{\n" +
+            "    echo \"Unit testing...\"\n" +
+            "  }\n" +
+            "},'integration':{\n" +
+            "  node{\n" +
+            "    echo \"Integration testing...\"\n" +
+            "  }\n" +
+            "}"));
+
+        WorkflowRun b1 = j.waitForCompletion(job1.scheduleBuild2(0).get());
+        j.assertBuildStatusSuccess(b1);
+
+        List<Map> nodes = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/", List.class);
+        List<Map> steps = get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/", List.class);
+        Assert.assertEquals(4, nodes.size());
+        Assert.assertEquals(3, steps.size());
+        Assert.assertTrue(PipelineGraphSnapshot.getFile(b1).exists());
+
+        // missing snapshot is computed again
+        Assert.assertTrue(PipelineGraphSnapshot.getFile(b1).delete());
+        Assert.assertEquals(nodes, get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/", List.class));
+        Assert.assertEquals(steps, get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/", List.class));
+        Assert.assertTrue(PipelineGraphSnapshot.getFile(b1).exists());
+
+        List<Map> unitSteps = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/"+nodes.get(2).get("id")+"/steps/", List.class);
+        Assert.assertEquals(1, unitSteps.size());
+        Assert.assertEquals("SUCCESS", unitSteps.get(0).get("result"));
+    }
+
+    @Test
+    public void nodesOfRunningPipelineFromLiveGraph() throws Exception {
+        WorkflowJob job1 = j.jenkins.createProject(WorkflowJob.class, "pipeline1");
+
+        job1.setDefinition(new CpsFlowDefinition("stage 'build'\n" +
+            "node{\n" +
+            "  echo \"Building...\"\n" +
+            "}\n" +
+            "\n" +
+            "stage 'test'\n" +
+            "node{\n" +
+            "  echo \"Testing...\"\n" +
+            "}\n" +
+            "input message: 'Deploy?'\n" +
+            "stage 'deploy'\n" +
+            "node{\n" +
+            "  echo \"Deploying...\"\n" +
+            "}"));
+
+        WorkflowRun b1 = job1.scheduleBuild2(0).waitForStart();
+        List<Map> nodes = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/", List.class);
+        for(int i = 0; i < 20 && nodes.size() < 2; i++){
+            Thread.sleep(500);
+            nodes = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/", List.class);
+        }
+        Assert.assertTrue(b1.isBuilding());
+        Assert.assertEquals(2, nodes.size());
+        Assert.assertEquals("build", nodes.get(0).get("displayName"));
+        Assert.assertEquals("SUCCESS", nodes.get(0).get("result"));
+        Assert.assertEquals("test", nodes.get(1).get("displayName"));
+        Assert.assertEquals("RUNNING", nodes.get(1).get("state"));
+
+        // same live graph is served to each request and it's in sync with the flow graph
+        PipelineNodeGraphBuilder live = LivePipelineGraph.getGraphBuilder(b1);
+        Assert.assertSame(live, LivePipelineGraph.getGraphBuilder(b1));
+        PipelineNodeGraphBuilder walked = new PipelineNodeGraphBuilder(b1);
+        Assert.assertEquals(walked.getSages(), live.getSages());
+        Assert.assertEquals(walked.getAllSteps(), live.getAllSteps());
+
+        // graph doesn't move while waiting for input, pipeline nodes are computed once for all readers
+        Link link = new Link("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/");
+        LivePipelineGraph.PipelineNodes pipelineNodes = LivePipelineGraph.getPipelineNodes(b1, link, null, 0);
+        Assert.assertSame(pipelineNodes, LivePipelineGraph.getPipelineNodes(b1, link, null, 0));
+        Assert.assertEquals(live.getVersion(), pipelineNodes.getVersion());
+
+        // cached nodes are records that don't retain flow nodes, steps are looked up in the live graph
+        for(BluePipelineNode n: pipelineNodes.getNodes(b1)){
+            Assert.assertTrue(n instanceof PipelineSnapshotNodeImpl);
+        }
+        List<Map> steps = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/" + nodes.get(1).get("id") + "/steps/", List.class);
+        Assert.assertEquals("Print Message", steps.get(0).get("displayName"));
+
+        // aborted run doesn't keep its live graph
+        Assert.assertTrue(LivePipelineGraph.isLive(b1));
+        b1.doStop();
+        j.assertBuildStatus(Result.ABORTED, j.waitForCompletion(b1));
+        for(int i = 0; i < 20 && LivePipelineGraph.isLive(b1); i++){
+            Thread.sleep(500);
+        }
+        Assert.assertFalse(LivePipelineGraph.isLive(b1));
+    }
+
+    @Test
+    public void nodesFromStagesOnlyGraph() throws Exception {
+        WorkflowJob job1 = j.jenkins.createProject(WorkflowJob.class, "pipeline1");
+
+        job1.setDefinition(new CpsFlowDefinition("node {\n" +
+            "  stage ('build') {\n" +
+            "    echo 'Building'\n" +
+            "  }\n" +
+            "  stage ('test') {\n" +
+            "    parallel firstBranch: {\n" +
+            "      echo 'first Branch'\n" +
+            "      stage('firstBranchTest') {\n" +
+            "        echo 'Testing first Branch'\n" +
+            "      }\n" +
+            "    }, secondBranch: {\n" +
+            "      echo 'second Branch'\n" +
+            "    }\n" +
+            "  }\n" +
+            "  stage ('deploy') {\n" +
+            "    echo 'Deploying'\n" +
+            "  }\n" +
+            "}"));
+
+        WorkflowRun b1 = j.assertBuildStatusSuccess(job1.scheduleBuild2(0));
+
+        PipelineNodeGraphBuilder walked = new PipelineNodeGraphBuilder(b1);
+        PipelineNodeGraphBuilder streamed = PipelineNodeGraphBuilder.stagesOnly(b1);
+        Assert.assertEquals(walked.getSages(), streamed.getSages());
+        Assert.assertEquals(walked.getParallelBranches(), streamed.getParallelBranches());
+
+        // nodes loaded ahead in parallel are given in id order
+        List<FlowNode> prefetched = new ArrayList<>();
+        for(FlowNode n: PipelineNodeGraphBuilder.streamNodes(b1.getExecution())){
+            prefetched.add(n);
+        }
+        Assert.assertEquals(PipelineNodeGraphBuilder.sortNodes(b1.getExecution()), prefetched);
+
+        Link link = new Link("/nodes/");
+        List<BluePipelineNode> expected = walked.getPipelineNodes(link);
+        List<BluePipelineNode> actual = streamed.getPipelineNodes(link);
+        Assert.assertEquals(5, actual.size());
+        for(int i = 0; i < expected.size(); i++){
+            Assert.assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            Assert.assertEquals(expected.get(i).getDisplayName(), actual.get(i).getDisplayName());
+            Assert.assertEquals(expected.get(i).getResult(), actual.get(i).getResult());
+            Assert.assertEquals(expected.get(i).getStateObj(), actual.get(i).getStateObj());
+            Assert.assertEquals(expected.get(i).getDurationInMillis(), actual.get(i).getDurationInMillis());
+            Assert.assertEquals(expected.get(i).getEdges().size(), actual.get(i).getEdges().size());
+        }
+
+        // steps are not retained, they are streamed again when asked for
+        for(FlowNode n: streamed.getParallelBranches()){
+            Assert.assertEquals(walked.getSteps(n), streamed.getSteps(n));
+        }
+        for(FlowNode n: streamed.getSages()){
+            Assert.assertEquals(walked.getSteps(n), streamed.getSteps(n));
+        }
+        Assert.assertEquals(walked.getAllSteps(), streamed.getAllSteps());
+        Assert.assertEquals(walked.getAllSteps().subList(1, 3), streamed.getSteps(null, -1, 1, 2));
+
+        // snapshot steps are recorded in the same pass that finds stages and branches
+        PipelineGraphSnapshot expectedSnapshot = PipelineGraphSnapshot.create(walked);
+        PipelineGraphSnapshot recorded = PipelineGraphSnapshot.create(PipelineNodeGraphBuilder.withStepRecords(b1, 0));
+        Assert.assertEquals(expectedSnapshot.getSteps().size(), recorded.getSteps().size());
+        for(int i = 0; i < expectedSnapshot.getSteps().size(); i++){
+            PipelineGraphSnapshot.Step e = expectedSnapshot.getSteps().get(i);
+            PipelineGraphSnapshot.Step a = recorded.getSteps().get(i);
+            Assert.assertEquals(e.getId(), a.getId());
+            Assert.assertEquals(e.getDisplayName(), a.getDisplayName());
+            Assert.assertEquals(e.getResult(), a.getResult());
+            Assert.assertEquals(e.getState(), a.getState());
+            Assert.assertEquals(e.getStartTime(), a.getStartTime());
+            Assert.assertEquals(e.getDurationInMillis(), a.getDurationInMillis());
+        }
+        for(PipelineGraphSnapshot.Node n: expectedSnapshot.getNodes()){
+            Assert.assertEquals(n.getStepIds(), recorded.getNode(n.getId()).getStepIds());
+        }
+    }
+
+    @Test
+    public void nodesAndStepsChangedSinceVersion() throws Exception {
+        WorkflowJob job1 = j.jenkins.createProject(WorkflowJob.class, "pipeline1");
+
+        job1.setDefinition(new CpsFlowDefinition("stage 'build'\n" +
+            "node{\n" +
+            "  echo \"Building...\"\n" +
+            "}\n" +
+            "stage 'test'\n" +
+            "node{\n" +
+            "  echo \"Testing...\"\n" +
+            "}\n" +
+            "input message: 'Deploy?'\n" +
+            "stage 'deploy'\n" +
+            "node{\n" +
+            "  echo \"Deploying...\"\n" +
+            "}"));
+
+        WorkflowRun b1 = job1.scheduleBuild2(0).waitForStart();
+        List<Map> steps = get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/", List.class);
+        for(int i = 0; i < 20 && steps.size() < 3; i++){
+            Thread.sleep(500);
+            steps = get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/", List.class);
+        }
+        Assert.assertTrue(b1.isBuilding());
+        Assert.assertEquals(3, steps.size());
+
+        HttpResponse<String> response = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/", 200, HttpResponse.class);
+        int version = Integer.parseInt(response.getHeaders().getFirst(PipelineNodeUtil.GRAPH_VERSION_HEADER));
+
+        // waiting for input, only the running stage and step are listed
+        List<Map> nodes = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/?since=" + version, List.class);
+        Assert.assertEquals(1, nodes.size());
+        Assert.assertEquals("test", nodes.get(0).get("displayName"));
+        Assert.assertEquals("RUNNING", nodes.get(0).get("state"));
+
+        steps = get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/?since=" + version, List.class);
+        Assert.assertEquals(1, steps.size());
+        Assert.assertEquals("RUNNING", steps.get(0).get("state"));
+
+        nodes = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/?since=0", List.class);
+        Assert.assertEquals(2, nodes.size());
+
+        get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/?since=latest", 400, Map.class);
+    }
+
+    @Test
+    public void singleNodeComputedAlone() throws Exception {
+        WorkflowJob job1 = j.jenkins.createProject(WorkflowJob.class, "pipeline1");
+
+        job1.setDefinition(new CpsFlowDefinition("stage('build'){\n" +
+            "  echo 'Building'\n" +
+            "}\n" +
+            "stage('test'){\n" +
+            "  parallel firstBranch: {\n" +
+            "    echo 'first Branch'\n" +
+            "  }, secondBranch: {\n" +
+            "    echo 'second Branch'\n" +
+            "  }\n" +
+            "}\n" +
+            "stage('deploy'){\n" +
+            "  echo 'Deploying'\n" +
+            "}"));
+
+        WorkflowRun b1 = j.assertBuildStatusSuccess(job1.scheduleBuild2(0));
+
+        // each node computed on its own is the same as listed with all the others
+        PipelineNodeGraphBuilder builder = PipelineNodeGraphBuilder.stagesOnly(b1);
+        Link link = new Link("/");
+        List<BluePipelineNode> nodes = builder.getPipelineNodes(link);
+        Assert.assertEquals(5, nodes.size());
+        for(BluePipelineNode node: nodes){
+            BluePipelineNode single = builder.getPipelineNode(node.getId(), link);
+            Assert.assertNotNull(single);
+            Assert.assertEquals(node.getDisplayName(), single.getDisplayName());
+            Assert.assertEquals(node.getStateObj(), single.getStateObj());
+            Assert.assertEquals(node.getResult(), single.getResult());
+            Assert.assertEquals(node.getDurationInMillis(), single.getDurationInMillis());
+            Assert.assertEquals(node.getEdges().size(), single.getEdges().size());
+            for(int i = 0; i < node.getEdges().size(); i++){
+                Assert.assertEquals(node.getEdges().get(i).getId(), single.getEdges().get(i).getId());
+            }
+        }
+        Assert.assertNull(builder.getPipelineNode("1", link));
+
+        Map resp = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/" + nodes.get(1).getId() + "/", Map.class);
+        Assert.assertEquals("test", resp.get("displayName"));
+        Assert.assertEquals(2, ((List) resp.get("edges")).size());
+        get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/1/", 404, Map.class);
+    }
+
+    @Test
+    public void compactNodes() throws Exception {
+        WorkflowJob job1 = j.jenkins.createProject(WorkflowJob.class, "pipeline1");
+
+        job1.setDefinition(new CpsFlowDefinition("stage('build'){\n" +
+            "  echo 'Building'\n" +
+            "}\n" +
+            "stage('test'){\n" +
+            "  parallel firstBranch: {\n" +
+            "    echo 'first Branch'\n" +
+            "  }, secondBranch: {\n" +
+            "    echo 'second Branch'\n" +
+            "  }\n" +
+            "}\n" +
+            "stage('deploy'){\n" +
+            "  echo 'Deploying'\n" +
+            "}"));
+
+        j.assertBuildStatusSuccess(job1.scheduleBuild2(0));
+
+        List<Map> nodes = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/", List.class);
+        Map resp = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/compact/", Map.class);
+        List<String> fields = (List<String>) resp.get("fields");
+        List<String> states = (List<String>) resp.get("states");
+        List<String> results = (List<String>) resp.get("results");
+        List<List> compact = (List<List>) resp.get("nodes");
+
+        Assert.assertEquals(nodes.size(), compact.size());
+        for(int i = 0; i < nodes.size(); i++){
+            Map node = nodes.get(i);
+            List values = compact.get(i);
+            Assert.assertEquals(node.get("id"), values.get(fields.indexOf("id")));
+            Assert.assertEquals(node.get("displayName"), values.get(fields.indexOf("displayName")));
+            Assert.assertEquals(node.get("state"), states.get((Integer) values.get(fields.indexOf("state"))));
+            Assert.assertEquals(node.get("result"), results.get((Integer) values.get(fields.indexOf("result"))));
+            List<Map> edges = (List<Map>) node.get("edges");
+            List<Integer> compactEdges = (List<Integer>) values.get(fields.indexOf("edges"));
+            Assert.assertEquals(edges.size(), compactEdges.size());
+            for(int e = 0; e < edges.size(); e++){
+                Assert.assertEquals(edges.get(e).get("id"), nodes.get(compactEdges.get(e)).get("id"));
+            }
+        }
+    }
+
+    @Test
+    public void currentStageOfRunningPipeline() throws Exception {
+        WorkflowJob job1 = j.jenkins.createProject(WorkflowJob.class, "pipeline1");
+
+        job1.setDefinition(new CpsFlowDefinition("stage('build'){\n" +
+            "  node{\n" +
+            "    echo \"Building...\"\n" +
+            "  }\n" +
+            "}\n" +
+            "stage('test'){\n" +
+            "  node{\n" +
+            "    echo \"Testing...\"\n" +
+            "  }\n" +
+            "  input message: 'Deploy?'\n" +
+            "}"));
+
+        WorkflowRun b1 = job1.scheduleBuild2(0).waitForStart();
+        FlowNode stage = PipelineNodeUtil.getCurrentStage(b1.getExecution());
+        for(int i = 0; i < 20 && (stage == null || !"test".equals(stage.getDisplayName())); i++){
+            Thread.sleep(500);
+            stage = PipelineNodeUtil.getCurrentStage(b1.getExecution());
+        }
+        Assert.assertTrue(b1.isBuilding());
+        Assert.assertNotNull(stage);
+        Assert.assertEquals("test", stage.getDisplayName());
+
+        // resolved from the heads when the run has no live graph
+        Map resp = get("/organizations/jenkins/pipelines/pipeline1/runs/1/currentStage/", Map.class);
+        Assert.assertEquals(stage.getId(), resp.get("id"));
+
+        // same node is listed as running in the pipeline graph, which is now live
+        resp = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/" + stage.getId() + "/", Map.class);
+        Assert.assertEquals("RUNNING", resp.get("state"));
+        Assert.assertTrue(LivePipelineGraph.isLive(b1));
+
+        // exported with the run as read from the live graph
+        resp = get("/organizations/jenkins/pipelines/pipeline1/runs/1/", Map.class);
+        Map currentStage = (Map) resp.get("currentStage");
+        Assert.assertEquals(stage.getId(), currentStage.get("id"));
+        Assert.assertEquals("test", currentStage.get("displayName"));
+
+        List<Map> runs = get("/organizations/jenkins/pipelines/pipeline1/runs/", List.class);
+        Assert.assertEquals(stage.getId(), ((Map) runs.get(0).get("currentStage")).get("id"));
+    }
+
+    @Test
+    public void graphTruncatedAtDeadline() throws Exception {
+        WorkflowJob job1 = j.jenkins.createProject(WorkflowJob.class, "pipeline1");
+
+        job1.setDefinition(new CpsFlowDefinition("stage 'build'\n" +
+            "node{\n" +
+            "  echo \"Building...\"\n" +
+            "}\n" +
+            "stage 'test'\n" +
+            "node{\n" +
+            "  echo \"Testing...\"\n" +
+            "}"));
+
+        WorkflowRun b1 = j.assertBuildStatusSuccess(job1.scheduleBuild2(0));
+
+        // deadline already passed, nothing is resolved
+        PipelineNodeGraphBuilder builder = PipelineNodeGraphBuilder.withDeadline(b1, 1);
+        Assert.assertTrue(builder.isTruncated());
+        Assert.assertEquals(0, builder.getPipelineNodes(new Link("/")).size());
+
+        builder = PipelineNodeGraphBuilder.withDeadline(b1, 0);
+        Assert.assertFalse(builder.isTruncated());
+        Assert.assertEquals(2, builder.getPipelineNodes(new Link("/")).size());
+
+        HttpResponse<String> response = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/", 200, HttpResponse.class);
+        Assert.assertNull(response.getHeaders().getFirst(PipelineNodeUtil.GRAPH_TRUNCATED_HEADER));
+    }
+
+    @Test
+    public void truncatedGraphResponse() throws Exception {
+        WorkflowJob job1 = j.jenkins.createProject(WorkflowJob.class, "pipeline1");
+
+        job1.setDefinition(new CpsFlowDefinition("stage 'build'\n" +
+            "node{\n" +
+            "  for(int i = 0; i < 300; i++){\n" +
+            "    echo \"Building ${i}\"\n" +
+            "  }\n" +
+            "}"));
+
+        WorkflowRun b1 = j.assertBuildStatusSuccess(job1.scheduleBuild2(0));
+
+        long timeBudget = PipelineNodeGraphBuilder.TIME_BUDGET_MILLIS;
+        PipelineNodeGraphBuilder.TIME_BUDGET_MILLIS = 1;
+        try {
+            // snapshot is computed again, requests run out of time waiting for it
+            Assert.assertTrue(awaitSnapshot(b1).delete());
+            HttpResponse<String> response = get("/organizations/jenkins/pipelines/pipeline1/runs/1/nodes/", 200, HttpResponse.class);
+            Assert.assertEquals("true", response.getHeaders().getFirst(PipelineNodeUtil.GRAPH_TRUNCATED_HEADER));
+            Assert.assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+
+            Assert.assertTrue(awaitSnapshot(b1).delete());
+            response = get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/", 200, HttpResponse.class);
+            Assert.assertEquals("true", response.getHeaders().getFirst(PipelineNodeUtil.GRAPH_TRUNCATED_HEADER));
+            Assert.assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+        } finally {
+            PipelineNodeGraphBuilder.TIME_BUDGET_MILLIS = timeBudget;
+        }
+
+        // complete snapshot was persisted in background meanwhile
+        awaitSnapshot(b1);
+        HttpResponse<String> response = get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/", 200, HttpResponse.class);
+        Assert.assertNull(response.getHeaders().getFirst(PipelineNodeUtil.GRAPH_TRUNCATED_HEADER));
+        Assert.assertNull(response.getHeaders().getFirst("Retry-After"));
+        Assert.assertEquals(300, get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/?limit=1000", List.class).size());
+    }
+
+    private static File awaitSnapshot(WorkflowRun run) throws InterruptedException {
+        File file = PipelineGraphSnapshot.getFile(run);
+        while(!file.exists()){
+            Thread.sleep(10);
+        }
+        return file;
+    }
+
+    @Test
+    public void stepsPage() throws Exception {
+        WorkflowJob job1 = j.jenkins.createProject(WorkflowJob.class, "pipeline1");
+
+        job1.setDefinition(new CpsFlowDefinition("stage 'build'\n" +
+            "node{\n" +
+            "  echo \"Building 1\"\n" +
+            "  echo \"Building 2\"\n" +
+            "  echo \"Building 3\"\n" +
+            "  echo \"Building 4\"\n" +
+            "}"));
+
+        j.assertBuildStatusSuccess(job1.scheduleBuild2(0));
+
+        List<Map> steps = get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/", List.class);
+        Assert.assertEquals(4, steps.size());
+
+        List<Map> page = get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/?start=1&limit=2", List.class);
+        Assert.assertEquals(2, page.size());
+        Assert.assertEquals(steps.get(1).get("id"), page.get(0).get("id"));
+        Assert.assertEquals(steps.get(2).get("id"), page.get(1).get("id"));
+
+        page = get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/?start=3&limit=2", List.class);
+        Assert.assertEquals(1, page.size());
+        Assert.assertEquals(steps.get(3).get("id"), page.get(0).get("id"));
+
+        page = get("/organizations/jenkins/pipelines/pipeline1/runs/1/steps/?start=4&limit=2", List.class);
+        Assert.assertEquals(0, page.size());
+    }
+
     private String getActionLink(Map resp, String capability){
         List<Map> actions = (List<Map>) resp.get("actions");
         assertNotNull(actions);
@@ -37,11 +37,7 @@ public class LinkResolverImpl extends LinkResolver {
                 return resource.getLink();
             }
         }else if(modelObject instanceof Run){
-            Run run = (Run) modelObject;
-            Resource resource = resolveRun(run);
-            if(resource != null){
-                return resource.getLink();
-            }
+            return resolveRun((Run) modelObject);
         }
         return null;
     }
@@ -54,11 +50,13 @@ public class LinkResolverImpl extends LinkResolver {
         return BluePipelineFactory.resolve(folder);
     }
 
-    private Resource resolveRun(Run run){
+    /**
+     * Run link is derived from link of its pipeline, run container is not looked into as the run is known
+     */
+    private Link resolveRun(Run run){
         Resource resource = resolveJob(run.getParent());
         if(resource instanceof BluePipeline){
-            BluePipeline pipeline = (BluePipeline) resource;
-            return pipeline.getRuns().get(run.getId());
+            return resource.getLink().rel("runs/" + run.getId());
         }
         return null;
     }
@@ -1,20 +1,25 @@
 package io.jenkins.blueocean.service.embedded.rest;
 
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Iterators;
 import hudson.model.Cause;
 import hudson.model.CauseAction;
 import hudson.model.Item;
 import hudson.model.Job;
 import hudson.model.Queue;
 import hudson.model.queue.ScheduleResult;
-import hudson.util.RunList;
 import io.jenkins.blueocean.commons.ServiceException;
 import io.jenkins.blueocean.rest.hal.Link;
 import io.jenkins.blueocean.rest.model.BluePipeline;
 import io.jenkins.blueocean.rest.model.BlueQueueItem;
 import io.jenkins.blueocean.rest.model.BlueRun;
 import io.jenkins.blueocean.rest.model.BlueRunContainer;
+import io.jenkins.blueocean.rest.pageable.Pageables;
 import jenkins.model.Jenkins;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import java.util.Iterator;
 
@@ -38,30 +43,64 @@ public class RunContainerImpl extends BlueRunContainer {
 
     @Override
     public BlueRun get(String name) {
-        RunList<? extends hudson.model.Run> runList = job.getBuilds();
-
-        hudson.model.Run run = null;
+        hudson.model.Run run;
         if (name != null) {
-            for (hudson.model.Run r : runList) {
-                if (r.getId().equals(name)) {
-                    run = r;
-                    break;
-                }
-            }
+            run = getRun(job, name);
             if (run == null) {
                 throw new ServiceException.NotFoundException(
                     String.format("Run %s not found in organization %s and pipeline %s",
                         name, pipeline.getOrganization(), job.getName()));
             }
         } else {
-            run = runList.getLastBuild();
+            run = job.getLastBuild();
         }
         return  AbstractRunImpl.getBlueRun(run, pipeline);
     }
 
+    /**
+     * Gives run of the job by its id, looked up by build number in the build map of the job. Run ids are build
+     * numbers, no builds are loaded for an id that isn't one.
+     *
+     * @return run with the given id, null if there is none
+     */
+    static @CheckForNull hudson.model.Run getRun(Job job, String id) {
+        int number;
+        try {
+            number = Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        hudson.model.Run run = job.getBuildByNumber(number);
+        return run != null && run.getId().equals(id) ? run : null;
+    }
+
     @Override
     public Iterator<BlueRun> iterator() {
-        return RunSearch.findRuns(job, pipeline.getLink()).iterator();
+        return iterator(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Runs are paged over their summaries in {@link RunSummaryIndex}, newest first, so only builds in the requested
+     * page are loaded. Summaries of runs that are gone are left out before paging.
+     */
+    @Override
+    public Iterator<BlueRun> iterator(int start, int limit) {
+        Iterator<RunSummaryIndex.Summary> summaries = Iterators.filter(RunSummaryIndex.getSummaries(job).iterator(),
+            new Predicate<RunSummaryIndex.Summary>() {
+                @Override
+                public boolean apply(RunSummaryIndex.Summary summary) {
+                    return RunSummaryIndex.exists(job, summary);
+                }
+            });
+        return Iterators.filter(Iterators.transform(Pageables.slice(summaries, start, limit),
+            new Function<RunSummaryIndex.Summary, BlueRun>() {
+                @Override
+                public BlueRun apply(RunSummaryIndex.Summary summary) {
+                    // run deleted since it was checked
+                    hudson.model.Run run = job.getBuildByNumber(summary.getNumber());
+                    return run == null ? null : AbstractRunImpl.getBlueRun(run, pipeline);
+                }
+            }), Predicates.notNull());
     }
 
     @Override
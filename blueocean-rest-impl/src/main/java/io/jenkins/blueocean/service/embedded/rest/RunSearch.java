@@ -1,11 +1,13 @@
 package io.jenkins.blueocean.service.embedded.rest;
 
+import com.google.common.base.Function;
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import hudson.Extension;
 import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TopLevelItem;
-import hudson.util.RunList;
 import io.jenkins.blueocean.commons.ServiceException;
 import io.jenkins.blueocean.rest.OmniSearch;
 import io.jenkins.blueocean.rest.Query;
@@ -16,9 +18,7 @@ import io.jenkins.blueocean.rest.pageable.Pageable;
 import io.jenkins.blueocean.rest.pageable.Pageables;
 import jenkins.model.Jenkins;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
 
 /**
  * Search API for Run
@@ -59,28 +59,34 @@ public class RunSearch extends OmniSearch<BlueRun> {
         }
         return Pageables.wrap(findRuns(null));
     }
+    /**
+     * Runs are listed over their summaries in {@link RunSummaryIndex}, each build is loaded only when it's reached.
+     */
     public static Iterable<BlueRun> findRuns(Job job, final Link parent){
-        final List<BlueRun> runs = new ArrayList<>();
         Iterable<Job> pipelines;
         if(job != null){
             pipelines = ImmutableList.of(job);
         }else{
             pipelines = Jenkins.getActiveInstance().getItems(Job.class);
         }
-        for (Job p : pipelines) {
-            RunList<? extends Run> runList = p.getBuilds();
-
-            for (Run r : runList) {
-                runs.add(AbstractRunImpl.getBlueRun(r, new Reachable() {
+        final Reachable reachable = new Reachable() {
+            @Override
+            public Link getLink() {
+                return parent;
+            }
+        };
+        return Iterables.concat(Iterables.transform(pipelines, new Function<Job, Iterable<BlueRun>>() {
+            @Override
+            public Iterable<BlueRun> apply(final Job p) {
+                return Iterables.filter(Iterables.transform(RunSummaryIndex.getSummaries(p), new Function<RunSummaryIndex.Summary, BlueRun>() {
                     @Override
-                    public Link getLink() {
-                        return parent;
+                    public BlueRun apply(RunSummaryIndex.Summary summary) {
+                        Run r = p.getBuildByNumber(summary.getNumber());
+                        return r == null ? null : AbstractRunImpl.getBlueRun(r, reachable);
                     }
-                }));
+                }), Predicates.notNull());
             }
-        }
-
-        return runs;
+        }));
     }
 
     public static Iterable<BlueRun> findRuns(Job pipeline){
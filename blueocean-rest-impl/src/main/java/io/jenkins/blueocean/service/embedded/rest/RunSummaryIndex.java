@@ -0,0 +1,469 @@
+package io.jenkins.blueocean.service.embedded.rest;
+
+import hudson.Extension;
+import hudson.model.Cause;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import io.jenkins.blueocean.rest.model.BlueRun;
+import io.jenkins.blueocean.rest.model.BlueRun.BlueRunResult;
+import io.jenkins.blueocean.rest.model.BlueRun.BlueRunState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+/**
+ * Summaries of the runs of a job: state, result, start time, duration and cause of each run, enough to list, count
+ * and order runs without loading their build records.
+ *
+ * Summaries of a job are kept in an append-only file in the job directory. A run is appended as it starts and again
+ * as it completes, a later record of a run supersedes earlier ones and a deleted run is recorded as removed. The file
+ * is read once per job, compacted when superseded records outnumber live ones and rebuilt from the builds of the job
+ * when it's missing or unreadable. Runs newer than the last indexed one, e.g. ones that ran while this plugin was
+ * disabled, are added when the index is first read and after a run is reported, not on every read. Runs deleted
+ * while the listener wasn't running are dropped when the index is first read.
+ *
+ * Summaries are read and brought up to date outside of the index lock, builds loaded meanwhile don't hold back runs
+ * being reported. Runs reported meanwhile take precedence over what was read.
+ *
+ * @see RunContainerImpl
+ * @see RunSearch
+ */
+public final class RunSummaryIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RunSummaryIndex.class);
+
+    /**
+     * Version of the file format, files written with any other version are rebuilt.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    static final String FILE_NAME = "blueocean-runs.dat";
+
+    /** Superseded records tolerated in the file before it's compacted, on top of one per live summary */
+    private static final int COMPACTION_SLACK = 64;
+
+    private static final Map<Job, RunSummaryIndex> indexes = new WeakHashMap<>();
+
+    /** Summaries by build number, newest first */
+    private final TreeMap<Integer, Summary> summaries = new TreeMap<>(Collections.<Integer>reverseOrder());
+
+    /** Build numbers of the runs not finished when last indexed, they are checked again on read */
+    private final TreeSet<Integer> active = new TreeSet<>();
+
+    /** Highest build number indexed, including runs dropped since */
+    private int highestNumber;
+
+    /** Number of records in the file, superseded ones included */
+    private int records;
+
+    /** False until the file is read */
+    private boolean loaded;
+
+    /** True once {@link Writer} reports a run, summaries are brought up to date on next read */
+    private boolean stale;
+
+    /** Runs reported while summaries are brought up to date, null if they are not */
+    private Map<Integer, Summary> reported;
+
+    /** Held while summaries are brought up to date, so that a single reader does it */
+    private final Object refreshLock = new Object();
+
+    private RunSummaryIndex() {
+    }
+
+    /**
+     * @return summaries of the runs of the job, newest first
+     */
+    public static List<Summary> getSummaries(Job job) {
+        return of(job).summaries(job);
+    }
+
+    /**
+     * @return summary of the last run of the job, null if the job has not run
+     */
+    public static @CheckForNull Summary getLastSummary(Job job) {
+        return of(job).last(job);
+    }
+
+    /**
+     * Checks the build directory of the run, without loading the build. The index is left as it is, runs are dropped
+     * from it by {@link Writer} or when it's first read.
+     *
+     * @return true if the run of the summary still exists
+     */
+    public static boolean exists(Job job, Summary summary) {
+        return new File(job.getBuildDir(), summary.getId()).isDirectory();
+    }
+
+    static File getFile(Job job) {
+        return new File(job.getRootDir(), FILE_NAME);
+    }
+
+    private static RunSummaryIndex of(Job job) {
+        synchronized (indexes) {
+            RunSummaryIndex index = indexes.get(job);
+            if(index == null){
+                index = new RunSummaryIndex();
+                indexes.put(job, index);
+            }
+            return index;
+        }
+    }
+
+    private List<Summary> summaries(Job job) {
+        refreshIfStale(job);
+        synchronized (this) {
+            return new ArrayList<>(summaries.values());
+        }
+    }
+
+    private @CheckForNull Summary last(Job job) {
+        refreshIfStale(job);
+        synchronized (this) {
+            return summaries.isEmpty() ? null : summaries.firstEntry().getValue();
+        }
+    }
+
+    /**
+     * Records a run as it's reported by {@link Writer}. Nothing is recorded for a job whose index was never built,
+     * the run is picked up when the index is. A run reported while the index is first read is recorded once it is.
+     *
+     * @param summary summary of the run, null if the run is deleted
+     */
+    private synchronized void record(Job job, int number, @CheckForNull Summary summary) {
+        if(reported != null){
+            reported.put(number, summary);
+        }
+        File file = getFile(job);
+        if(loaded){
+            put(number, summary);
+            stale = true;
+        }else if(reported != null || !file.exists()){
+            return;
+        }
+        append(file, Collections.singletonMap(number, summary));
+    }
+
+    /**
+     * Summaries are brought up to date when the index is first read and after {@link Writer} reports a run, as
+     * that's when runs missed by the listener may show up. Reads in between are served as they are.
+     */
+    private void refreshIfStale(Job job) {
+        synchronized (refreshLock) {
+            synchronized (this) {
+                if(loaded && !stale){
+                    return;
+                }
+                stale = false;
+                reported = new HashMap<>();
+            }
+            boolean refreshed = false;
+            try {
+                refresh(job);
+                refreshed = true;
+            } finally {
+                synchronized (this) {
+                    reported = null;
+                    // next read tries again
+                    stale |= !refreshed;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the file if it's not read yet, then brings summaries of the runs that were not finished and of the runs
+     * newer than the last indexed one up to date. Builds are read without holding the index lock, summaries are
+     * swapped in once they are all read.
+     */
+    private void refresh(Job job) {
+        File file = getFile(job);
+        RunSummaryIndex read = null;
+        boolean rewrite = false;
+        Set<Integer> activeRuns;
+        int lastIndexed;
+        synchronized (this) {
+            activeRuns = new TreeSet<>(active);
+            lastIndexed = highestNumber;
+        }
+        Map<Integer, Summary> changed = new TreeMap<>();
+        if(!loaded){
+            read = new RunSummaryIndex();
+            rewrite = !read.load(file);
+            activeRuns = read.active;
+            lastIndexed = read.highestNumber;
+            // runs deleted while the listener wasn't running
+            String[] buildDirs = job.getBuildDir().list();
+            Set<String> existing = new HashSet<>(Arrays.asList(buildDirs == null ? new String[0] : buildDirs));
+            for(Summary summary: read.summaries.values()){
+                if(!existing.contains(summary.getId())){
+                    changed.put(summary.getNumber(), null);
+                }
+            }
+        }
+
+        for(Integer number: activeRuns){
+            Run run = job.getBuildByNumber(number);
+            changed.put(number, run == null ? null : new Summary(run));
+        }
+        for(Run run = job.getLastBuild(); run != null && run.getNumber() > lastIndexed; run = run.getPreviousBuild()){
+            changed.put(run.getNumber(), new Summary(run));
+        }
+
+        synchronized (this) {
+            if(read != null){
+                summaries.putAll(read.summaries);
+                active.addAll(read.active);
+                highestNumber = read.highestNumber;
+                records = read.records;
+                loaded = true;
+            }
+            Map<Integer, Summary> updates = new TreeMap<>();
+            for(Map.Entry<Integer, Summary> e: changed.entrySet()){
+                Summary current = summaries.get(e.getKey());
+                Summary summary = e.getValue();
+                boolean unchanged = summary == null
+                    ? current == null
+                    : current != null && current.getState() == summary.getState();
+                // runs reported meanwhile are more recent than what was read here
+                if(!unchanged && !reported.containsKey(e.getKey())){
+                    updates.put(e.getKey(), summary);
+                }
+            }
+            if(read != null){
+                // not recorded yet, the index wasn't read
+                updates.putAll(reported);
+            }
+            for(Map.Entry<Integer, Summary> e: updates.entrySet()){
+                put(e.getKey(), e.getValue());
+            }
+
+            if(rewrite || records + updates.size() > summaries.size() * 2 + COMPACTION_SLACK){
+                write(file);
+            }else if(!updates.isEmpty()){
+                append(file, updates);
+            }
+        }
+    }
+
+    private void put(int number, @CheckForNull Summary summary) {
+        highestNumber = Math.max(highestNumber, number);
+        if(summary == null){
+            summaries.remove(number);
+            active.remove(number);
+            return;
+        }
+        summaries.put(number, summary);
+        if(summary.getState() == BlueRunState.FINISHED){
+            active.remove(number);
+        }else{
+            active.add(number);
+        }
+    }
+
+    /**
+     * @return false if the file is missing or can't be read, summaries are left empty then
+     */
+    private boolean load(File file) {
+        if(!file.exists()){
+            return false;
+        }
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != FORMAT_VERSION){
+                return false;
+            }
+            while(true){
+                int number;
+                try {
+                    number = in.readInt();
+                } catch (EOFException e) {
+                    return true;
+                }
+                put(number, in.readBoolean() ? new Summary(number, in) : null);
+                records++;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn(String.format("Failed to read run summaries from %s, they will be rebuilt: %s", file, e.getMessage()));
+            summaries.clear();
+            active.clear();
+            records = 0;
+            highestNumber = 0;
+            return false;
+        }
+    }
+
+    private void append(File file, Map<Integer, Summary> changed) {
+        if(!file.exists()){
+            write(file);
+            return;
+        }
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            writeRecords(out, changed);
+            records += changed.size();
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Failed to append run summaries to %s: %s", file, e.getMessage()));
+        }
+    }
+
+    private void write(File file) {
+        try {
+            File tmp = File.createTempFile(FILE_NAME, ".tmp", file.getParentFile());
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                writeRecords(out, summaries);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            records = summaries.size();
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Failed to write run summaries to %s: %s", file, e.getMessage()));
+        }
+    }
+
+    private static void writeRecords(DataOutputStream out, Map<Integer, Summary> records) throws IOException {
+        for(Map.Entry<Integer, Summary> e: records.entrySet()){
+            out.writeInt(e.getKey());
+            out.writeBoolean(e.getValue() != null);
+            if(e.getValue() != null){
+                e.getValue().write(out);
+            }
+        }
+    }
+
+    /**
+     * Summary of a run, as exposed by {@link BlueRun}.
+     */
+    public static final class Summary {
+        private final int number;
+        private final BlueRunState state;
+        private final BlueRunResult result;
+        private final long startTime;
+        private final long durationInMillis;
+        private final String cause;
+
+        Summary(Run run) {
+            this(run, null);
+        }
+
+        /**
+         * @param state state of the run, computed from the run if null
+         */
+        Summary(Run run, @CheckForNull BlueRunState state) {
+            this.number = run.getNumber();
+            if(state != null){
+                this.state = state;
+            }else if(!run.hasntStartedYet() && run.isLogUpdated()){
+                this.state = BlueRunState.RUNNING;
+            }else if(!run.isLogUpdated()){
+                this.state = BlueRunState.FINISHED;
+            }else{
+                this.state = BlueRunState.QUEUED;
+            }
+            this.result = run.getResult() != null ? BlueRunResult.valueOf(run.getResult().toString()) : BlueRunResult.UNKNOWN;
+            this.startTime = run.getStartTimeInMillis();
+            this.durationInMillis = run.getDuration();
+            Collection<Cause> causes = run.getCauses();
+            this.cause = causes.isEmpty() ? null : causes.iterator().next().getShortDescription();
+        }
+
+        private Summary(int number, DataInputStream in) throws IOException {
+            this.number = number;
+            this.state = BlueRunState.valueOf(in.readUTF());
+            this.result = BlueRunResult.valueOf(in.readUTF());
+            this.startTime = in.readLong();
+            this.durationInMillis = in.readLong();
+            this.cause = in.readBoolean() ? in.readUTF() : null;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(state.name());
+            out.writeUTF(result.name());
+            out.writeLong(startTime);
+            out.writeLong(durationInMillis);
+            out.writeBoolean(cause != null);
+            if(cause != null){
+                out.writeUTF(cause);
+            }
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public String getId() {
+            return Integer.toString(number);
+        }
+
+        public BlueRunState getState() {
+            return state;
+        }
+
+        public BlueRunResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return start time of the run in milliseconds since epoch
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getDurationInMillis() {
+            return durationInMillis;
+        }
+
+        /**
+         * @return short description of the first cause of the run
+         */
+        public @CheckForNull String getCause() {
+            return cause;
+        }
+    }
+
+    /**
+     * Records runs of all jobs in the index as they start, complete and get deleted.
+     */
+    @Extension
+    public static class Writer extends RunListener<Run> {
+        @Override
+        public void onStarted(Run run, TaskListener listener) {
+            of(run.getParent()).record(run.getParent(), run.getNumber(), new Summary(run, BlueRunState.RUNNING));
+        }
+
+        @Override
+        public void onCompleted(Run run, @Nonnull TaskListener listener) {
+            of(run.getParent()).record(run.getParent(), run.getNumber(), new Summary(run, BlueRunState.FINISHED));
+        }
+
+        @Override
+        public void onDeleted(Run run) {
+            of(run.getParent()).record(run.getParent(), run.getNumber(), null);
+        }
+    }
+}
@@ -30,9 +30,11 @@ import hudson.tasks.junit.TestResultAction;
 import io.jenkins.blueocean.rest.Reachable;
 import io.jenkins.blueocean.rest.annotation.Capability;
 import io.jenkins.blueocean.rest.model.BluePipeline;
+import io.jenkins.blueocean.rest.model.BlueRun;
 import io.jenkins.blueocean.rest.model.Resource;
 import io.jenkins.blueocean.service.embedded.rest.AbstractPipelineImpl;
 import io.jenkins.blueocean.service.embedded.rest.BluePipelineFactory;
+import io.jenkins.blueocean.service.embedded.rest.RunSummaryIndex;
 import jenkins.model.Jenkins;
 import org.junit.Assert;
 import org.junit.Test;
@@ -40,6 +42,7 @@ import org.jvnet.hudson.test.MockFolder;
 import org.jvnet.hudson.test.TestBuilder;
 import org.kohsuke.stapler.export.Exported;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
@@ -296,6 +299,78 @@ public class PipelineApiTest extends BaseTest {
         validateRun(b, lr);
     }
 
+    @Test
+    public void getPipelineRunsPageTest() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("pipeline6");
+        FreeStyleBuild[] builds = new FreeStyleBuild[3];
+        for(int i = 0; i < builds.length; i++){
+            builds[i] = j.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        }
+
+        // runs are listed newest first
+        List<Map> resp = get("/organizations/jenkins/pipelines/pipeline6/runs/?start=1&limit=1", List.class);
+        Assert.assertEquals(1, resp.size());
+        validateRun(builds[1], resp.get(0));
+
+        resp = get("/organizations/jenkins/pipelines/pipeline6/runs/?start=0&limit=5", List.class);
+        Assert.assertEquals(3, resp.size());
+        validateRun(builds[2], resp.get(0));
+        validateRun(builds[0], resp.get(2));
+    }
+
+    @Test
+    public void getPipelineRunByIdTest() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("pipeline7");
+        FreeStyleBuild b1 = j.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        FreeStyleBuild b2 = j.assertBuildStatusSuccess(p.scheduleBuild2(0));
+
+        validateRun(b1, get("/organizations/jenkins/pipelines/pipeline7/runs/" + b1.getId() + "/"));
+        validateRun(b2, get("/organizations/jenkins/pipelines/pipeline7/runs/" + b2.getId() + "/"));
+
+        get("/organizations/jenkins/pipelines/pipeline7/runs/3/", 404, Map.class);
+        get("/organizations/jenkins/pipelines/pipeline7/runs/foo/", 404, Map.class);
+    }
+
+    @Test
+    public void runSummaryIndexTest() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("pipeline8");
+        FreeStyleBuild b1 = j.assertBuildStatusSuccess(p.scheduleBuild2(0));
+
+        // index is built on first read, from the builds of the job
+        List<RunSummaryIndex.Summary> summaries = RunSummaryIndex.getSummaries(p);
+        Assert.assertEquals(1, summaries.size());
+        Assert.assertTrue(new File(p.getRootDir(), "blueocean-runs.dat").exists());
+
+        // and maintained as runs complete and get deleted
+        FreeStyleBuild b2 = j.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        FreeStyleBuild b3 = j.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        b2.delete();
+
+        summaries = RunSummaryIndex.getSummaries(p);
+        Assert.assertEquals(2, summaries.size());
+        Assert.assertEquals(b3.getId(), summaries.get(0).getId());
+        Assert.assertEquals(b1.getId(), summaries.get(1).getId());
+        Assert.assertEquals(BlueRun.BlueRunState.FINISHED, summaries.get(0).getState());
+        Assert.assertEquals(BlueRun.BlueRunResult.SUCCESS, summaries.get(0).getResult());
+        Assert.assertEquals(b3.getStartTimeInMillis(), summaries.get(0).getStartTime());
+        Assert.assertEquals(b3.getDuration(), summaries.get(0).getDurationInMillis());
+        Assert.assertEquals(b3.getCauses().get(0).getShortDescription(), summaries.get(0).getCause());
+
+        List<Map> resp = get("/organizations/jenkins/pipelines/pipeline8/runs/", List.class);
+        Assert.assertEquals(2, resp.size());
+        validateRun(b3, resp.get(0));
+        validateRun(b1, resp.get(1));
+
+        // run deleted behind the listener's back is left out before paging
+        FreeStyleBuild b4 = j.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        new FilePath(b4.getRootDir()).deleteRecursive();
+        resp = get("/organizations/jenkins/pipelines/pipeline8/runs/?start=0&limit=1", List.class);
+        Assert.assertEquals(1, resp.size());
+        validateRun(b3, resp.get(0));
+        // reads leave the index as it is
+        Assert.assertEquals(3, RunSummaryIndex.getSummaries(p).size());
+    }
+
     @Test
     public void getPipelineRunsStopTest() throws Exception {
         FreeStyleProject p = j.createFreeStyleProject("p1");
@@ -1,7 +1,25 @@
 package io.jenkins.blueocean.rest.model;
 
+import io.jenkins.blueocean.commons.stapler.TreeResponse;
+import org.kohsuke.stapler.WebMethod;
+import org.kohsuke.stapler.verb.GET;
+
 /**
  * @author Vivek Pandey
  */
 public abstract class BluePipelineNodeContainer extends Container<BluePipelineNode>{
+
+    /**
+     * Nodes of this container in compact form, at <code>/nodes/compact/</code>. Same nodes as listed, all of them
+     * at once.
+     *
+     * @return nodes encoded as arrays of values
+     * @see BluePipelineNodeGraph
+     */
+    @GET
+    @WebMethod(name = "compact")
+    @TreeResponse
+    public BluePipelineNodeGraph getCompact() {
+        return new BluePipelineNodeGraph(this);
+    }
 }
@@ -0,0 +1,106 @@
+package io.jenkins.blueocean.rest.model;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact representation of pipeline nodes, for graphs too big to transfer node by node as {@link BluePipelineNode}
+ * JSON objects.
+ *
+ * Each node is an array of values in the order of {@link #getFields()}. State and result are indices into
+ * {@link #getStates()} and {@link #getResults()}, start time is in milliseconds since epoch and edges are indices of
+ * the nodes they point to in {@link #getNodes()}. Edge to a node that is not listed is given by its id. Links and
+ * actions are left out, link of a node is derived from its id.
+ *
+ * e.g.
+ * <pre>
+ * {
+ *   "fields" : [ "id", "displayName", "state", "result", "startTime", "durationInMillis", "edges" ],
+ *   "states" : [ "QUEUED", "RUNNING", "FINISHED" ],
+ *   "results" : [ "SUCCESS", "UNSTABLE", "FAILURE", "NOT_BUILT", "UNKNOWN", "ABORTED" ],
+ *   "nodes" : [
+ *     [ "3", "build", 2, 0, 1457685185712, 5034, [ 1 ] ],
+ *     [ "9", "test", 1, 4, 1457685190746, 2010, [ ] ]
+ *   ]
+ * }
+ * </pre>
+ *
+ * @see BluePipelineNodeContainer#getCompact()
+ */
+@ExportedBean
+public final class BluePipelineNodeGraph {
+    private static final String[] FIELDS = {BluePipelineStep.ID, BluePipelineStep.DISPLAY_NAME, BlueRun.STATE,
+        BluePipelineStep.RESULT, BluePipelineStep.START_TIME, BluePipelineStep.DURATION_IN_MILLIS, BluePipelineStep.EDGES};
+
+    private final List<Object[]> nodes = new ArrayList<>();
+
+    public BluePipelineNodeGraph(Iterable<BluePipelineNode> nodes) {
+        List<BluePipelineNode> list = new ArrayList<>();
+        Map<String, Integer> positions = new HashMap<>();
+        for(BluePipelineNode node: nodes){
+            positions.put(node.getId(), list.size());
+            list.add(node);
+        }
+        for(BluePipelineNode node: list){
+            List<Object> edges = new ArrayList<>(node.getEdges().size());
+            for(BluePipelineNode.Edge edge: node.getEdges()){
+                Integer position = positions.get(edge.getId());
+                edges.add(position == null ? edge.getId() : position);
+            }
+            this.nodes.add(new Object[]{
+                node.getId(),
+                node.getDisplayName(),
+                node.getStateObj() == null ? null : node.getStateObj().ordinal(),
+                node.getResult() == null ? null : node.getResult().ordinal(),
+                node.getStartTime() == null ? null : node.getStartTime().getTime(),
+                node.getDurationInMillis(),
+                edges
+            });
+        }
+    }
+
+    /**
+     * @return names of the values each node is made of, in order
+     */
+    @Exported(name = "fields")
+    public String[] getFields() {
+        return FIELDS.clone();
+    }
+
+    /**
+     * @return names of states, state of a node is an index into them
+     */
+    @Exported(name = "states")
+    public String[] getStates() {
+        return names(BlueRun.BlueRunState.values());
+    }
+
+    /**
+     * @return names of results, result of a node is an index into them
+     */
+    @Exported(name = "results")
+    public String[] getResults() {
+        return names(BlueRun.BlueRunResult.values());
+    }
+
+    /**
+     * @return nodes as arrays of values
+     */
+    @Exported(name = "nodes")
+    public List<Object[]> getNodes() {
+        return nodes;
+    }
+
+    private static String[] names(Enum<?>[] values){
+        String[] names = new String[values.length];
+        for(int i = 0; i < values.length; i++){
+            names[i] = values[i].name();
+        }
+        return names;
+    }
+}
@@ -1,6 +1,9 @@
 package io.jenkins.blueocean.rest.model;
 
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import hudson.util.AdaptedIterator;
+import io.jenkins.blueocean.commons.ServiceException;
 import io.jenkins.blueocean.rest.hal.Link;
 
 import java.util.Collections;
@@ -50,6 +53,62 @@ public class Containers {
     }
 
 
+    /**
+     * Container of the members of first container followed by the members of second container, both read lazily.
+     *
+     * To page into the second container, members of the first one are counted, so the first container should be
+     * the small one, e.g. queue items followed by runs. Pages past the first container are served by the paging of
+     * the second one.
+     */
+    public static <T extends Resource> Container<T> concat(final Link self, final Container<? extends T> first,
+                                                           final Container<? extends T> second) {
+        return new AbstractContainer<T>() {
+            @Override
+            public Link getLink() {
+                return self;
+            }
+
+            @Override
+            public T get(String name) {
+                int idx;
+                try {
+                    idx = Integer.parseInt(name);
+                } catch (NumberFormatException e) {
+                    throw new ServiceException.NotFoundException(String.format("No member %s in %s", name, self));
+                }
+                Iterator<T> it = idx < 0 ? Collections.<T>emptyIterator() : iterator(idx, 1);
+                if (!it.hasNext()) {
+                    throw new ServiceException.NotFoundException(String.format("No member %s in %s", name, self));
+                }
+                return it.next();
+            }
+
+            @Override
+            public Iterator<T> iterator() {
+                return Iterators.<T>concat(first.iterator(), second.iterator());
+            }
+
+            @Override
+            public Iterator<T> iterator(int start, int limit) {
+                List<T> head = Lists.<T>newArrayList(first.iterator());
+                if (start >= head.size()) {
+                    // page lies in the second container only
+                    return Containers.<T>page(second, start - head.size(), limit);
+                }
+                int end = (int) Math.min((long) start + limit, head.size());
+                if (end - start == limit) {
+                    return head.subList(start, end).iterator();
+                }
+                return Iterators.concat(head.subList(start, end).iterator(), Containers.<T>page(second, 0, limit - (end - start)));
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked") // members are only read
+    private static <T> Iterator<T> page(Container<? extends T> container, int start, int limit) {
+        return (Iterator<T>) container.iterator(start, limit);
+    }
+
     public static <T> Container<Resource> from(final Link self, final List<T> base) {
         return new AbstractContainer<Resource>() {
             @Override